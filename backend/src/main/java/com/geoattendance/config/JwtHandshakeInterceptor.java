@@ -0,0 +1,95 @@
+package com.geoattendance.config;
+
+import com.geoattendance.entity.User;
+import com.geoattendance.security.JwtTokenProvider;
+import com.geoattendance.service.UserCache;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.server.ServerHttpRequest;
+import org.springframework.http.server.ServerHttpResponse;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+import org.springframework.web.socket.WebSocketHandler;
+import org.springframework.web.socket.server.HandshakeInterceptor;
+import org.springframework.web.util.UriComponentsBuilder;
+
+import java.util.Date;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Authenticates a WebSocket handshake from a Bearer header or (for browsers, which cannot
+ * set headers on WebSocket requests) a {@code token} query parameter. Only active users with
+ * a role allowed to post locations get through. The resolved user is stored in the session
+ * attributes under {@link #USER_ATTRIBUTE} and the token's expiry under
+ * {@link #EXPIRES_AT_ATTRIBUTE}; the handler re-checks both on every frame.
+ */
+@Component
+public class JwtHandshakeInterceptor implements HandshakeInterceptor {
+
+    public static final String USER_ATTRIBUTE = "user";
+    public static final String EXPIRES_AT_ATTRIBUTE = "tokenExpiresAt";
+
+    // Same roles /location/update admits
+    private static final Set<String> LOCATION_ROLES = Set.of("EMPLOYEE", "MANAGER", "ADMIN");
+
+    private static final Logger log = LoggerFactory.getLogger(JwtHandshakeInterceptor.class);
+
+    private final JwtTokenProvider jwtTokenProvider;
+    private final UserCache userCache;
+
+    public JwtHandshakeInterceptor(JwtTokenProvider jwtTokenProvider, UserCache userCache) {
+        this.jwtTokenProvider = jwtTokenProvider;
+        this.userCache = userCache;
+    }
+
+    @Override
+    public boolean beforeHandshake(ServerHttpRequest request, ServerHttpResponse response,
+                                   WebSocketHandler wsHandler, Map<String, Object> attributes) {
+        String token = tokenFrom(request);
+        User user = null;
+        Date expiresAt = null;
+        try {
+            if (token != null && jwtTokenProvider.validateToken(token)) {
+                user = userCache.findByEmail(jwtTokenProvider.getUsernameFromToken(token)).orElse(null);
+                expiresAt = jwtTokenProvider.getExpirationFromToken(token);
+            }
+        } catch (RuntimeException e) {
+            log.debug("Rejected WebSocket token: {}", e.getMessage());
+        }
+
+        if (user == null || expiresAt == null || !user.isActive()) {
+            response.setStatusCode(HttpStatus.UNAUTHORIZED);
+            return false;
+        }
+        if (!mayPostLocations(user)) {
+            response.setStatusCode(HttpStatus.FORBIDDEN);
+            return false;
+        }
+        attributes.put(USER_ATTRIBUTE, user);
+        attributes.put(EXPIRES_AT_ATTRIBUTE, expiresAt.getTime());
+        return true;
+    }
+
+    /**
+     * Whether the user may stream locations: active and in one of the location roles
+     */
+    public static boolean mayPostLocations(User user) {
+        return user.isActive() && user.getRole() != null && LOCATION_ROLES.contains(user.getRole().toUpperCase());
+    }
+
+    @Override
+    public void afterHandshake(ServerHttpRequest request, ServerHttpResponse response,
+                               WebSocketHandler wsHandler, Exception exception) {
+    }
+
+    private static String tokenFrom(ServerHttpRequest request) {
+        String header = request.getHeaders().getFirst("Authorization");
+        if (StringUtils.hasText(header) && header.startsWith("Bearer ")) {
+            return header.substring(7);
+        }
+        String token = UriComponentsBuilder.fromUri(request.getURI()).build().getQueryParams().getFirst("token");
+        return StringUtils.hasText(token) ? token : null;
+    }
+}
@@ -0,0 +1,149 @@
+package com.geoattendance.config;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.geoattendance.dto.LocationFrames;
+import com.geoattendance.entity.User;
+import com.geoattendance.service.AttendanceService;
+import com.geoattendance.service.UserCache;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.BinaryMessage;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.handler.AbstractWebSocketHandler;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Streams location fixes over one authenticated connection instead of an HTTPS request per
+ * ping. Each text frame is {@code lat,lng[,accuracy]}; each reply is the same JSON body
+ * /location/update returns. Binary frames carry one or more {@link LocationFrames} fixes
+ * and are answered with the result for the newest one. The user is authenticated by
+ * {@link JwtHandshakeInterceptor}; every frame re-checks the token's expiry and, through
+ * {@link UserCache}, that the user is still active and in a location role, and closes the
+ * session with {@link CloseStatus#POLICY_VIOLATION} otherwise.
+ */
+@Component
+public class LocationWebSocketHandler extends AbstractWebSocketHandler {
+
+    private static final Logger log = LoggerFactory.getLogger(LocationWebSocketHandler.class);
+
+    private final AttendanceService attendanceService;
+    private final UserCache userCache;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    public LocationWebSocketHandler(AttendanceService attendanceService, UserCache userCache) {
+        this.attendanceService = attendanceService;
+        this.userCache = userCache;
+    }
+
+    @Override
+    public void afterConnectionEstablished(WebSocketSession session) {
+        log.debug("Location stream opened for user {}", user(session).getId());
+    }
+
+    @Override
+    protected void handleTextMessage(WebSocketSession session, TextMessage message) throws IOException {
+        User user = authorizedUser(session);
+        if (user == null) {
+            return;
+        }
+        Map<String, Object> reply;
+        try {
+            double[] fix = parseFix(message.getPayload());
+            // Unknown when missing, NaN or negative, as for binary frames
+            Float accuracy = fix.length > 2 && !Double.isNaN(fix[2]) && fix[2] >= 0 ? (float) fix[2] : null;
+            reply = attendanceService.processLocationUpdate(user, fix[0], fix[1], accuracy).toResponseBody();
+        } catch (IllegalArgumentException e) {
+            reply = Map.of("status", "ERROR", "error", e.getMessage());
+        } catch (RuntimeException e) {
+            log.error("Location update over WebSocket failed for user {}: {}", user.getId(), e.getMessage());
+            reply = Map.of("status", "ERROR", "error", e.getMessage() != null ? e.getMessage() : "Location update failed");
+        }
+        session.sendMessage(new TextMessage(objectMapper.writeValueAsString(reply)));
+    }
+
+    @Override
+    protected void handleBinaryMessage(WebSocketSession session, BinaryMessage message) throws IOException {
+        User user = authorizedUser(session);
+        if (user == null) {
+            return;
+        }
+        Map<String, Object> reply;
+        try {
+            LocationFrames frames = LocationFrames.decode(message.getPayload());
+            reply = new HashMap<>(attendanceService.processLocationFrames(user, frames).toResponseBody());
+            reply.put("lastSequence", frames.maxSequence());
+        } catch (IllegalArgumentException e) {
+            reply = Map.of("status", "ERROR", "error", e.getMessage());
+        } catch (RuntimeException e) {
+            log.error("Binary location update over WebSocket failed for user {}: {}", user.getId(), e.getMessage());
+            reply = Map.of("status", "ERROR", "error", e.getMessage() != null ? e.getMessage() : "Location update failed");
+        }
+        session.sendMessage(new TextMessage(objectMapper.writeValueAsString(reply)));
+    }
+
+    @Override
+    public void afterConnectionClosed(WebSocketSession session, CloseStatus status) {
+        log.debug("Location stream closed for user {}: {}", user(session).getId(), status);
+    }
+
+    private static User user(WebSocketSession session) {
+        return (User) session.getAttributes().get(JwtHandshakeInterceptor.USER_ATTRIBUTE);
+    }
+
+    /**
+     * The session's user as currently stored, or null after closing the session because the
+     * token expired or the user was deactivated or lost the location roles
+     */
+    private User authorizedUser(WebSocketSession session) throws IOException {
+        User user = user(session);
+        Long expiresAt = (Long) session.getAttributes().get(JwtHandshakeInterceptor.EXPIRES_AT_ATTRIBUTE);
+        if (expiresAt == null || System.currentTimeMillis() >= expiresAt) {
+            log.debug("Closing location stream of user {}: token expired", user.getId());
+            session.close(CloseStatus.POLICY_VIOLATION.withReason("Token expired"));
+            return null;
+        }
+        User current = userCache.findByEmail(user.getEmail()).orElse(null);
+        if (current == null || !JwtHandshakeInterceptor.mayPostLocations(current)) {
+            log.debug("Closing location stream of user {}: no longer authorized", user.getId());
+            session.close(CloseStatus.POLICY_VIOLATION.withReason("Not authorized"));
+            return null;
+        }
+        session.getAttributes().put(JwtHandshakeInterceptor.USER_ATTRIBUTE, current);
+        return current;
+    }
+
+    /**
+     * Parse {@code lat,lng[,accuracy]} without splitting into intermediate strings. Latitude and
+     * longitude must be finite and in range; accuracy is returned as sent.
+     */
+    static double[] parseFix(String payload) {
+        int first = payload.indexOf(',');
+        if (first < 0) {
+            throw new IllegalArgumentException("Expected lat,lng[,accuracy]");
+        }
+        int second = payload.indexOf(',', first + 1);
+        try {
+            double latitude = Double.parseDouble(payload.substring(0, first).trim());
+            double longitude = Double.parseDouble(
+                    (second < 0 ? payload.substring(first + 1) : payload.substring(first + 1, second)).trim());
+            // parseDouble accepts "NaN" and "Infinity", and NaN passes every range comparison
+            if (!Double.isFinite(latitude) || !Double.isFinite(longitude)
+                    || latitude < -90 || latitude > 90 || longitude < -180 || longitude > 180) {
+                throw new IllegalArgumentException("Coordinates out of range");
+            }
+            if (second < 0) {
+                return new double[] {latitude, longitude};
+            }
+            double accuracy = Double.parseDouble(payload.substring(second + 1).trim());
+            return new double[] {latitude, longitude, accuracy};
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Expected lat,lng[,accuracy]");
+        }
+    }
+}
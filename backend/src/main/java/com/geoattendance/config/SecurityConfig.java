@@ -99,8 +99,12 @@ public class SecurityConfig {
                         .requestMatchers("/auth/login", "/auth/register", "/auth/logout").permitAll()
                         .requestMatchers("/auth/debug/**", "/debug/**", "/public/**", "/error", "/error/**").permitAll()
                         .requestMatchers("/ws/notifications", "/ws/notifications/**").permitAll()
+                        .requestMatchers("/ws/location").permitAll()
                         // Swagger/OpenAPI documentation endpoints
                         .requestMatchers("/swagger-ui/**", "/v3/api-docs/**").permitAll()
+                        // Health is public; metrics and other management endpoints are for admins
+                        .requestMatchers("/actuator/health").permitAll()
+                        .requestMatchers("/actuator/**").hasRole("ADMIN")
                         // Allow OPTIONS requests for CORS
                         .requestMatchers(HttpMethod.OPTIONS, "/**").permitAll()
                         // All other endpoints require authentication (including /auth/me)
@@ -10,14 +10,24 @@ import org.springframework.web.socket.config.annotation.WebSocketHandlerRegistry
 public class WebSocketConfig implements WebSocketConfigurer {
 
     private final NotificationWebSocketHandler notificationWebSocketHandler;
+    private final LocationWebSocketHandler locationWebSocketHandler;
+    private final JwtHandshakeInterceptor jwtHandshakeInterceptor;
 
-    public WebSocketConfig(NotificationWebSocketHandler notificationWebSocketHandler) {
+    public WebSocketConfig(NotificationWebSocketHandler notificationWebSocketHandler,
+                           LocationWebSocketHandler locationWebSocketHandler,
+                           JwtHandshakeInterceptor jwtHandshakeInterceptor) {
         this.notificationWebSocketHandler = notificationWebSocketHandler;
+        this.locationWebSocketHandler = locationWebSocketHandler;
+        this.jwtHandshakeInterceptor = jwtHandshakeInterceptor;
     }
 
     @Override
     public void registerWebSocketHandlers(WebSocketHandlerRegistry registry) {
         registry.addHandler(notificationWebSocketHandler, "/ws/notifications")
                 .setAllowedOrigins("*");
+        // Authenticated at handshake; security filters let the upgrade request through
+        registry.addHandler(locationWebSocketHandler, "/ws/location")
+                .addInterceptors(jwtHandshakeInterceptor)
+                .setAllowedOrigins("*");
     }
 }
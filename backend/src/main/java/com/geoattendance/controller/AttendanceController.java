@@ -1,11 +1,15 @@
 package com.geoattendance.controller;
 
+import com.geoattendance.dto.AttendanceSyncRequest;
+import com.geoattendance.dto.AttendanceSyncResponse;
 import com.geoattendance.entity.AttendanceRecord;
 import com.geoattendance.entity.Team;
 import com.geoattendance.entity.User;
 import com.geoattendance.repository.UserRepository;
 import com.geoattendance.service.AttendanceService;
+import com.geoattendance.service.AttendanceSyncService;
 import com.geoattendance.service.AuthenticationService;
+import com.geoattendance.service.IdempotencyService;
 import com.geoattendance.service.TeamService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -28,6 +32,8 @@ import java.util.Optional;
 public class AttendanceController {
 
     private final AttendanceService attendanceService;
+    private final AttendanceSyncService attendanceSyncService;
+    private final IdempotencyService idempotencyService;
     private final AuthenticationService authenticationService;
     private final TeamService teamService;
     private final UserRepository userRepository;
@@ -137,19 +143,24 @@ public class AttendanceController {
     }
 
     /**
-     * Manual check-in
+     * Manual check-in. Retries carrying the same Idempotency-Key get the first outcome.
      */
     @PostMapping("/check-in")
     @PreAuthorize("hasAnyRole('EMPLOYEE', 'MANAGER', 'ADMIN')")
-    public ResponseEntity<?> checkIn(@RequestBody CheckInRequest request) {
+    public ResponseEntity<?> checkIn(@RequestBody CheckInRequest request,
+            @RequestHeader(value = "Idempotency-Key", required = false) String idempotencyKey) {
         try {
             User currentUser = authenticationService.getCurrentUser();
-            AttendanceRecord record = attendanceService.manualCheckIn(
-                    currentUser,
-                    request.getLatitude(),
-                    request.getLongitude(),
-                    request.getAccuracy());
+            AttendanceRecord record = idempotencyService.execute(currentUser.getId(), idempotencyKey, "check-in",
+                    () -> attendanceService.manualCheckIn(
+                            currentUser,
+                            request.getLatitude(),
+                            request.getLongitude(),
+                            request.getAccuracy()));
             return ResponseEntity.ok(record);
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT)
+                    .body(Map.of("error", e.getMessage(), "message", e.getMessage()));
         } catch (RuntimeException e) {
             log.error("Check-in failed: {}", e.getMessage());
             return ResponseEntity.status(HttpStatus.BAD_REQUEST)
@@ -158,19 +169,24 @@ public class AttendanceController {
     }
 
     /**
-     * Manual check-out
+     * Manual check-out. Retries carrying the same Idempotency-Key get the first outcome.
      */
     @PostMapping("/check-out")
     @PreAuthorize("hasAnyRole('EMPLOYEE', 'MANAGER', 'ADMIN')")
-    public ResponseEntity<?> checkOut(@RequestBody CheckInRequest request) {
+    public ResponseEntity<?> checkOut(@RequestBody CheckInRequest request,
+            @RequestHeader(value = "Idempotency-Key", required = false) String idempotencyKey) {
         try {
             User currentUser = authenticationService.getCurrentUser();
-            AttendanceRecord record = attendanceService.manualCheckOut(
-                    currentUser,
-                    request.getLatitude(),
-                    request.getLongitude(),
-                    request.getAccuracy());
+            AttendanceRecord record = idempotencyService.execute(currentUser.getId(), idempotencyKey, "check-out",
+                    () -> attendanceService.manualCheckOut(
+                            currentUser,
+                            request.getLatitude(),
+                            request.getLongitude(),
+                            request.getAccuracy()));
             return ResponseEntity.ok(record);
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT)
+                    .body(Map.of("error", e.getMessage(), "message", e.getMessage()));
         } catch (RuntimeException e) {
             log.error("Check-out failed: {}", e.getMessage());
             return ResponseEntity.status(HttpStatus.BAD_REQUEST)
@@ -178,6 +194,27 @@ public class AttendanceController {
         }
     }
 
+    /**
+     * Upload check-ins, check-outs and location fixes queued while offline, in one request.
+     * Events already received from the same device are skipped, so retrying is safe.
+     */
+    @PostMapping("/sync")
+    @PreAuthorize("hasAnyRole('EMPLOYEE', 'MANAGER', 'ADMIN')")
+    public ResponseEntity<?> sync(@RequestBody AttendanceSyncRequest request) {
+        try {
+            User currentUser = authenticationService.getCurrentUser();
+            AttendanceSyncResponse response = attendanceSyncService.sync(currentUser, request);
+            if (response.getError() != null) {
+                // Partial progress plus the event to resend from
+                return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body(response);
+            }
+            return ResponseEntity.ok(response);
+        } catch (IllegalArgumentException e) {
+            log.warn("Rejected offline sync: {}", e.getMessage());
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
+    }
+
     // Request DTOs
     public static class CheckInRequest {
         private Double latitude;
@@ -1,17 +1,27 @@
 package com.geoattendance.controller;
 
+import com.geoattendance.dto.GeofenceBatchCheckRequest;
+import com.geoattendance.dto.GeofenceBatchCheckResponse;
 import com.geoattendance.entity.Geofence;
 import com.geoattendance.entity.User;
+import com.geoattendance.geo.GeofenceCatalog;
+import com.geoattendance.geo.GeofenceSnapshot;
 import com.geoattendance.service.GeofencingService;
 import com.geoattendance.service.AuthenticationService;
 import com.geoattendance.service.TeamService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.CacheControl;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
 
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 
 @RestController
 @RequestMapping("/geofences")
@@ -23,6 +33,9 @@ public class GeofenceController {
     private final AuthenticationService authenticationService;
     private final TeamService teamService;
 
+    @Value("${geofencing.batch.max-points:10000}")
+    private int batchMaxPoints;
+
     public GeofenceController(GeofencingService geofencingService, 
                             AuthenticationService authenticationService,
                             TeamService teamService) {
@@ -70,10 +83,16 @@ public class GeofenceController {
      */
     @PostMapping
     @PreAuthorize("hasAnyRole('MANAGER', 'ADMIN')")
-    public ResponseEntity<Geofence> createGeofence(@RequestBody Geofence geofence) {
+    public ResponseEntity<?> createGeofence(@RequestBody Geofence geofence) {
         User currentUser = authenticationService.getCurrentUser();
         geofence.setCreatedById(currentUser.getId());
-        Geofence created = geofencingService.createGeofence(geofence);
+        Geofence created;
+        try {
+            created = geofencingService.createGeofence(geofence);
+        } catch (IllegalArgumentException e) {
+            log.warn("Rejected geofence {}: {}", geofence.getName(), e.getMessage());
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
 
         // If the creator is a manager, associate this geofence with their team
         if ("MANAGER".equalsIgnoreCase(currentUser.getRole())) {
@@ -97,7 +116,7 @@ public class GeofenceController {
      */
     @PutMapping("/{id}")
     @PreAuthorize("hasAnyRole('MANAGER', 'ADMIN')")
-    public ResponseEntity<Geofence> updateGeofence(
+    public ResponseEntity<?> updateGeofence(
         @PathVariable String id,
         @RequestBody Geofence geofenceUpdate
     ) {
@@ -108,8 +127,13 @@ public class GeofenceController {
             return ResponseEntity.status(403).build();
         }
         
-        Geofence updated = geofencingService.updateGeofence(id, geofenceUpdate);
-        return ResponseEntity.ok(updated);
+        try {
+            Geofence updated = geofencingService.updateGeofence(id, geofenceUpdate);
+            return ResponseEntity.ok(updated);
+        } catch (IllegalArgumentException e) {
+            log.warn("Rejected update of geofence {}: {}", id, e.getMessage());
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
     }
 
     @DeleteMapping("/{id}")
@@ -156,31 +180,106 @@ public class GeofenceController {
         @RequestParam Double longitude
     ) {
         User currentUser = authenticationService.getCurrentUser();
-        String managerId = null;
-        
-        if ("MANAGER".equalsIgnoreCase(currentUser.getRole()) || "ADMIN".equalsIgnoreCase(currentUser.getRole())) {
-            managerId = currentUser.getId();
-        } else if ("EMPLOYEE".equalsIgnoreCase(currentUser.getRole())) {
-            managerId = currentUser.getManagerId();
-        }
+        String managerId = geofenceOwnerFor(currentUser);
         
         if (managerId == null) {
             return ResponseEntity.ok(null);
         }
         
-        List<Geofence> myActiveGeofences = geofencingService.getActiveGeofencesByManager(managerId);
-        Geofence found = null;
-        for (Geofence g : myActiveGeofences) {
-            boolean inside = g.getGeofenceType() == Geofence.GeofenceType.CIRCLE
-                ? geofencingService.isPointInCircleGeofence(latitude, longitude, g)
-                : geofencingService.isPointInPolygonGeofence(latitude, longitude, g);
-            if (inside) {
-                found = g;
-                break;
+        Geofence found = geofencingService.findGeofenceContainingPoint(managerId, latitude, longitude);
+        
+        return ResponseEntity.ok(found);
+    }
+
+    /**
+     * Find the geofence containing each of a batch of points (kiosk gateways, offline sync).
+     * Uses the same manager scoping as /find.
+     */
+    @PostMapping("/check-batch")
+    @PreAuthorize("hasAnyRole('EMPLOYEE', 'MANAGER', 'ADMIN')")
+    public ResponseEntity<?> checkPointsBatch(@RequestBody GeofenceBatchCheckRequest request) {
+        List<GeofenceBatchCheckRequest.Point> points = request.getPoints();
+        if (points == null || points.isEmpty()) {
+            return ResponseEntity.badRequest().body(Map.of("error", "At least one point is required"));
+        }
+        if (points.size() > batchMaxPoints) {
+            return ResponseEntity.badRequest().body(Map.of("error", "At most " + batchMaxPoints + " points per request"));
+        }
+        
+        double[] latitudes = new double[points.size()];
+        double[] longitudes = new double[points.size()];
+        for (int i = 0; i < points.size(); i++) {
+            GeofenceBatchCheckRequest.Point point = points.get(i);
+            if (point == null || point.getLatitude() == null || point.getLongitude() == null) {
+                return ResponseEntity.badRequest().body(Map.of("error", "Point " + i + " must have latitude and longitude"));
             }
+            latitudes[i] = point.getLatitude();
+            longitudes[i] = point.getLongitude();
         }
         
-        return ResponseEntity.ok(found);
+        User currentUser = authenticationService.getCurrentUser();
+        String managerId = geofenceOwnerFor(currentUser);
+        
+        List<Geofence> found = managerId != null
+            ? geofencingService.findGeofencesContainingPoints(managerId, latitudes, longitudes)
+            : Collections.nCopies(points.size(), null);
+        
+        float accuracyThreshold = geofencingService.getAccuracyThresholdMeters();
+        List<GeofenceBatchCheckResponse.PointResult> results = new ArrayList<>(points.size());
+        int insideCount = 0;
+        for (int i = 0; i < points.size(); i++) {
+            Geofence geofence = found.get(i);
+            Float accuracy = points.get(i).getAccuracy();
+            if (geofence != null) {
+                insideCount++;
+            }
+            results.add(GeofenceBatchCheckResponse.PointResult.builder()
+                .index(i)
+                .inside(geofence != null)
+                .geofenceId(geofence != null ? geofence.getId() : null)
+                .geofenceName(geofence != null ? geofence.getName() : null)
+                .lowAccuracy(accuracy != null && accuracy > accuracyThreshold)
+                .build());
+        }
+        
+        return ResponseEntity.ok(GeofenceBatchCheckResponse.builder()
+            .count(points.size())
+            .insideCount(insideCount)
+            .results(results)
+            .build());
+    }
+
+    /**
+     * Compact catalog of the geofences relevant to the caller, for devices that evaluate
+     * containment locally and only report transitions. Uses the same manager scoping as /find.
+     * Spring answers 304 itself when If-None-Match carries the current ETag.
+     */
+    @GetMapping("/catalog")
+    @PreAuthorize("hasAnyRole('EMPLOYEE', 'MANAGER', 'ADMIN')")
+    public ResponseEntity<byte[]> getCatalog() {
+        User currentUser = authenticationService.getCurrentUser();
+        String managerId = geofenceOwnerFor(currentUser);
+        
+        GeofenceCatalog catalog = geofencingService.getCatalog(managerId);
+        return ResponseEntity.ok()
+            .eTag(catalog.getEtag())
+            .cacheControl(CacheControl.noCache().cachePrivate())
+            .contentType(MediaType.APPLICATION_JSON)
+            .body(catalog.getBody());
+    }
+
+    /**
+     * Version and size of the in-memory geofence snapshot, for debugging stale lookups
+     */
+    @GetMapping("/snapshot")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<Map<String, Object>> getSnapshotInfo() {
+        GeofenceSnapshot snapshot = geofencingService.getSnapshot();
+        return ResponseEntity.ok(Map.of(
+            "version", snapshot.getVersion(),
+            "builtAt", snapshot.getBuiltAt().toString(),
+            "geofenceCount", snapshot.size()
+        ));
     }
 
     /**
@@ -197,4 +296,17 @@ public class GeofenceController {
         double distance = geofencingService.calculateDistance(lat1, lng1, lat2, lng2);
         return ResponseEntity.ok(distance);
     }
+
+    /**
+     * Manager whose geofences apply to the user: their own for managers and admins,
+     * their manager's for employees
+     */
+    private String geofenceOwnerFor(User user) {
+        if ("MANAGER".equalsIgnoreCase(user.getRole()) || "ADMIN".equalsIgnoreCase(user.getRole())) {
+            return user.getId();
+        } else if ("EMPLOYEE".equalsIgnoreCase(user.getRole())) {
+            return user.getManagerId();
+        }
+        return null;
+    }
 }
@@ -1,5 +1,6 @@
 package com.geoattendance.controller;
 
+import com.geoattendance.dto.LocationFrames;
 import com.geoattendance.entity.User;
 import com.geoattendance.service.AttendanceService;
 import com.geoattendance.service.AuthenticationService;
@@ -9,6 +10,7 @@ import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
 
+import java.util.HashMap;
 import java.util.Map;
 
 @RestController
@@ -35,11 +37,7 @@ public class LocationController {
                 request.getAccuracy()
             );
             
-            return ResponseEntity.ok(Map.of(
-                "status", result.getStatus(),
-                "message", result.getMessage(),
-                "geofenceName", result.getGeofenceName() != null ? result.getGeofenceName() : ""
-            ));
+            return ResponseEntity.ok(result.toResponseBody());
         } catch (Exception e) {
             log.error("Location update failed: {}", e.getMessage());
             return ResponseEntity.badRequest().body(Map.of(
@@ -49,6 +47,37 @@ public class LocationController {
         }
     }
 
+    /**
+     * Same as /update for one or more fixed-layout binary frames (see {@link LocationFrames}),
+     * processed oldest first. The reply is the result for the newest fix, plus the highest
+     * sequence number processed so the client can drop everything up to it.
+     */
+    @PostMapping(value = "/update", consumes = LocationFrames.CONTENT_TYPE)
+    @PreAuthorize("hasAnyRole('EMPLOYEE', 'MANAGER', 'ADMIN')")
+    public ResponseEntity<?> updateLocationBinary(@RequestBody byte[] body) {
+        LocationFrames frames;
+        try {
+            frames = LocationFrames.decode(body);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage(), "status", "ERROR"));
+        }
+
+        try {
+            User currentUser = authenticationService.getCurrentUser();
+            Map<String, Object> response = new HashMap<>(
+                attendanceService.processLocationFrames(currentUser, frames).toResponseBody());
+            response.put("lastSequence", frames.maxSequence());
+            response.put("processed", frames.size());
+            return ResponseEntity.ok(response);
+        } catch (Exception e) {
+            log.error("Binary location update failed: {}", e.getMessage());
+            return ResponseEntity.badRequest().body(Map.of(
+                "error", e.getMessage(),
+                "status", "ERROR"
+            ));
+        }
+    }
+
     public static class LocationUpdateRequest {
         private Double latitude;
         private Double longitude;
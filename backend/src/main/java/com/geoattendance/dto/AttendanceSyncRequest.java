@@ -0,0 +1,29 @@
+package com.geoattendance.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+public class AttendanceSyncRequest {
+    private String deviceId;             // Sequence numbers are per device; optional for single-device users
+    private List<Event> events;
+
+    public enum EventType {
+        CHECK_IN, CHECK_OUT, LOCATION
+    }
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Event {
+        private Long sequence;           // Client sequence number, increasing per device
+        private EventType type;
+        private Double latitude;
+        private Double longitude;
+        private Float accuracy;          // Optional, meters
+        private Long timestamp;          // Epoch millis when the event happened on the device
+    }
+}
@@ -0,0 +1,36 @@
+package com.geoattendance.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class AttendanceSyncResponse {
+    private long lastSequence;           // Highest sequence the server has seen; the client can drop everything up to it
+    private int applied;
+    private int duplicates;
+    private int rejected;
+    private List<EventResult> results;
+    private String error;                // Set when the batch stopped on a server error; resend from the failed sequence
+
+    public enum Outcome {
+        APPLIED, DUPLICATE, REJECTED, FAILED
+    }
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    @Builder
+    public static class EventResult {
+        private long sequence;
+        private Outcome outcome;
+        private String status;           // Attendance or location status after applying the event
+        private String message;
+    }
+}
@@ -0,0 +1,21 @@
+package com.geoattendance.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+public class GeofenceBatchCheckRequest {
+    private List<Point> points;
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Point {
+        private Double latitude;
+        private Double longitude;
+        private Float accuracy; // Optional, meters
+    }
+}
@@ -0,0 +1,30 @@
+package com.geoattendance.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class GeofenceBatchCheckResponse {
+    private int count;
+    private int insideCount;
+    private List<PointResult> results;
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    @Builder
+    public static class PointResult {
+        private int index;               // Position of the point in the request
+        private boolean inside;
+        private String geofenceId;
+        private String geofenceName;
+        private boolean lowAccuracy;     // Reported accuracy is worse than geofencing.accuracy-threshold
+    }
+}
@@ -0,0 +1,109 @@
+package com.geoattendance.dto;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Decoded batch of fixed-layout binary location frames, kept as primitive arrays.
+ * Each frame is 24 bytes, big-endian:
+ * <pre>
+ *   int   latitude  * 1e7
+ *   int   longitude * 1e7
+ *   float accuracy in meters (NaN when unknown)
+ *   long  fix time, epoch milliseconds (0 when unknown)
+ *   int   client sequence number
+ * </pre>
+ * A body may carry several frames back to back.
+ */
+public final class LocationFrames {
+
+    public static final String CONTENT_TYPE = "application/vnd.geoattendance.location";
+    public static final int FRAME_BYTES = 24;
+    public static final int MAX_FRAMES = 512;
+
+    private static final double E7 = 10_000_000d;
+
+    private final double[] latitudes;
+    private final double[] longitudes;
+    private final float[] accuracies;
+    private final long[] timestamps;
+    private final int[] sequences;
+
+    private LocationFrames(int count) {
+        this.latitudes = new double[count];
+        this.longitudes = new double[count];
+        this.accuracies = new float[count];
+        this.timestamps = new long[count];
+        this.sequences = new int[count];
+    }
+
+    public static LocationFrames decode(byte[] body) {
+        return decode(ByteBuffer.wrap(body));
+    }
+
+    public static LocationFrames decode(ByteBuffer buffer) {
+        int length = buffer.remaining();
+        if (length == 0 || length % FRAME_BYTES != 0) {
+            throw new IllegalArgumentException("Body must be a whole number of " + FRAME_BYTES + "-byte frames");
+        }
+        int count = length / FRAME_BYTES;
+        if (count > MAX_FRAMES) {
+            throw new IllegalArgumentException("At most " + MAX_FRAMES + " frames per body");
+        }
+
+        ByteBuffer in = buffer.slice().order(ByteOrder.BIG_ENDIAN);
+        LocationFrames frames = new LocationFrames(count);
+        for (int i = 0; i < count; i++) {
+            double latitude = in.getInt() / E7;
+            double longitude = in.getInt() / E7;
+            if (latitude < -90 || latitude > 90 || longitude < -180 || longitude > 180) {
+                throw new IllegalArgumentException("Frame " + i + " has coordinates out of range");
+            }
+            frames.latitudes[i] = latitude;
+            frames.longitudes[i] = longitude;
+            frames.accuracies[i] = in.getFloat();
+            frames.timestamps[i] = in.getLong();
+            frames.sequences[i] = in.getInt();
+        }
+        return frames;
+    }
+
+    public int size() {
+        return latitudes.length;
+    }
+
+    public double latitude(int i) {
+        return latitudes[i];
+    }
+
+    public double longitude(int i) {
+        return longitudes[i];
+    }
+
+    /**
+     * Accuracy in meters, or null when the client did not know it
+     */
+    public Float accuracy(int i) {
+        float accuracy = accuracies[i];
+        return Float.isNaN(accuracy) || accuracy < 0 ? null : accuracy;
+    }
+
+    /**
+     * Fix time in epoch milliseconds, or 0 when the client did not send one
+     */
+    public long timestamp(int i) {
+        return timestamps[i];
+    }
+
+    public int sequence(int i) {
+        return sequences[i];
+    }
+
+    public int maxSequence() {
+        int max = sequences[0];
+        for (int sequence : sequences) {
+            max = Math.max(max, sequence);
+        }
+        return max;
+    }
+}
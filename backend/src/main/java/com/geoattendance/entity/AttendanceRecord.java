@@ -4,18 +4,22 @@ import lombok.*;
 import org.springframework.data.annotation.Id;
 import org.springframework.data.annotation.CreatedDate;
 import org.springframework.data.annotation.LastModifiedDate;
+import org.springframework.data.annotation.Version;
 import org.springframework.data.mongodb.core.mapping.Document;
 import org.springframework.data.mongodb.core.mapping.DBRef;
 import org.springframework.data.mongodb.core.index.Indexed;
 import org.springframework.data.mongodb.core.index.CompoundIndex;
 import org.springframework.data.mongodb.core.index.CompoundIndexes;
 
+import java.time.LocalDate;
 import java.time.LocalDateTime;
 
 @Document(collection = "attendance_records")
 @CompoundIndexes({
     @CompoundIndex(name = "user_check_in", def = "{'userId': 1, 'checkInTime': 1}"),
-    @CompoundIndex(name = "user_status", def = "{'userId': 1, 'status': 1}")
+    @CompoundIndex(name = "user_status", def = "{'userId': 1, 'status': 1}"),
+    @CompoundIndex(name = "user_work_date", def = "{'userId': 1, 'workDate': 1}", unique = true,
+        partialFilter = "{'workDate': {'$exists': true}}")
 })
 @Data
 @NoArgsConstructor
@@ -34,6 +38,9 @@ public class AttendanceRecord {
     @Indexed
     private LocalDateTime checkInTime;
     
+    // Day the record belongs to; at most one record per user and day
+    private LocalDate workDate;
+    
     private LocalDateTime checkOutTime;
     
     private Double checkInLatitude;
@@ -59,6 +66,10 @@ public class AttendanceRecord {
     @LastModifiedDate
     private LocalDateTime updatedAt;
     
+    // Optimistic lock: saving a stale copy fails instead of overwriting a newer transition
+    @Version
+    private Long version;
+    
     public enum AttendanceStatus {
         CHECKED_IN, CHECKED_OUT, ABSENT, LATE, EARLY_LEAVE
     }
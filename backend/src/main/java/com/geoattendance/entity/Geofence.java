@@ -10,6 +10,7 @@ import org.springframework.data.mongodb.core.index.CompoundIndex;
 import org.springframework.data.mongodb.core.index.CompoundIndexes;
 import org.springframework.data.mongodb.core.index.GeoSpatialIndexed;
 import org.springframework.data.mongodb.core.geo.GeoJsonPoint;
+import org.springframework.data.mongodb.core.geo.GeoJsonPolygon;
 
 import java.time.LocalDateTime;
 import java.util.List;
@@ -17,7 +18,8 @@ import java.util.Map;
 
 @Document(collection = "geofences")
 @CompoundIndexes({
-    @CompoundIndex(name = "location_active", def = "{'location': '2dsphere', 'isActive': 1}")
+    @CompoundIndex(name = "location_active", def = "{'location': '2dsphere', 'isActive': 1}"),
+    @CompoundIndex(name = "boundary_active", def = "{'boundary': '2dsphere', 'isActive': 1}")
 })
 @Data
 @NoArgsConstructor
@@ -46,6 +48,9 @@ public class Geofence {
     
     private List<Map<String, Double>> polygonCoordinates;
     
+    // GeoJSON copy of polygonCoordinates, maintained by GeofencingService for $geoIntersects lookups
+    private GeoJsonPolygon boundary;
+    
     @Builder.Default
     private GeofenceType geofenceType = GeofenceType.CIRCLE;
     
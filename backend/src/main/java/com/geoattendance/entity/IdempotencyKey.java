@@ -0,0 +1,31 @@
+package com.geoattendance.entity;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.LocalDateTime;
+
+/**
+ * Outcome of a check-in or check-out request sent with an {@code Idempotency-Key} header,
+ * keyed by {@code userId:key}. Expired by a TTL index on {@code createdAt}.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Document(collection = "idempotency_keys")
+public class IdempotencyKey {
+    @Id
+    private String id;
+    private String userId;
+    private String operation;
+    private boolean completed;
+    private LocalDateTime inProgressUntil;  // Lease of the request running it; after that another request may take over
+    private String recordId;             // Attendance record the request produced
+    private String error;                // Message the request was rejected with
+    private LocalDateTime createdAt;
+}
@@ -0,0 +1,28 @@
+package com.geoattendance.entity;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.LocalDateTime;
+
+/**
+ * Most recent position reported by a user; one document per user, keyed by user id.
+ * Written in bulk by LastLocationStore rather than on every ping.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Document(collection = "last_locations")
+public class LastLocation {
+    @Id
+    private String userId;
+    private Double latitude;
+    private Double longitude;
+    private Float accuracyMeters;
+    private LocalDateTime observedAt;
+}
@@ -0,0 +1,27 @@
+package com.geoattendance.entity;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.util.Date;
+
+/**
+ * Time-limited claim of a scheduler role by one backend node. {@code token} goes up every
+ * time the lease changes hands, so work started under an older token can be told apart.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Document(collection = "scheduler_leases")
+public class SchedulerLease {
+    @Id
+    private String name;
+    private String owner;
+    private Long token;
+    private Date expiresAt;
+}
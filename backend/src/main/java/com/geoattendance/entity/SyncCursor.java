@@ -0,0 +1,28 @@
+package com.geoattendance.entity;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.LocalDateTime;
+
+/**
+ * Highest offline-sync sequence number consumed per user and device; keyed by
+ * {@code userId:deviceId}. Events at or below it are duplicates of earlier uploads.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Document(collection = "sync_cursors")
+public class SyncCursor {
+    @Id
+    private String id;
+    private String userId;
+    private String deviceId;
+    private Long lastSequence;
+    private LocalDateTime updatedAt;
+}
@@ -0,0 +1,490 @@
+package com.geoattendance.geo;
+
+import com.geoattendance.entity.Geofence;
+import org.springframework.data.geo.Point;
+import org.springframework.data.mongodb.core.geo.GeoJsonPolygon;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Immutable, primitive-only form of a {@link Geofence} used on the evaluation path.
+ * Polygons are flattened into parallel vertex arrays with per-edge slopes so the
+ * ray casting test neither boxes nor allocates.
+ */
+public final class CompiledGeofence {
+
+    /**
+     * How a whole area relates to the geofence
+     */
+    public enum Relation {
+        INSIDE, OUTSIDE, BOUNDARY
+    }
+
+    /**
+     * Which of several geofences containing a point wins: the lowest id, i.e. the oldest
+     * geofence. Both lookup strategies resolve overlaps in this order.
+     */
+    public static final Comparator<CompiledGeofence> PRECEDENCE =
+        Comparator.comparing(CompiledGeofence::getId, Comparator.nullsLast(Comparator.naturalOrder()));
+
+    // Slack applied to cell reach so haversine rounding can never flip a classification
+    private static final double REACH_SLACK = 1.01;
+    private static final double REACH_SLACK_METERS = 0.001;
+    private static final double EDGE_EPSILON_DEGREES = 1e-9;
+
+    private final Geofence geofence;
+    private final Geofence.GeofenceType type;
+    private final GeoBounds bounds;
+
+    // Circle geometry
+    private final double centerLat;
+    private final double centerLng;
+    private final double radiusMeters;
+
+    // Polygon geometry; edge i runs from vertex i to vertex (i + 1) % n
+    private final double[] lats;
+    private final double[] lngs;
+    private final double[] slopes;
+
+    private CompiledGeofence(Geofence geofence, Geofence.GeofenceType type, GeoBounds bounds,
+                             double centerLat, double centerLng, double radiusMeters,
+                             double[] lats, double[] lngs, double[] slopes) {
+        this.geofence = geofence;
+        this.type = type;
+        this.bounds = bounds;
+        this.centerLat = centerLat;
+        this.centerLng = centerLng;
+        this.radiusMeters = radiusMeters;
+        this.lats = lats;
+        this.lngs = lngs;
+        this.slopes = slopes;
+    }
+
+    /**
+     * Compile a geofence for evaluation. Geofences that cannot contain any point
+     * (missing centre, no usable vertices, unknown type) compile to an empty shape.
+     * Malformed polygon vertices left over from before save-time validation are dropped.
+     */
+    public static CompiledGeofence compile(Geofence geofence) {
+        if (geofence.getGeofenceType() == Geofence.GeofenceType.CIRCLE) {
+            if (geofence.getLatitude() == null || geofence.getLongitude() == null || geofence.getRadiusMeters() == null) {
+                return empty(geofence);
+            }
+            double lat = geofence.getLatitude();
+            double lng = geofence.getLongitude();
+            double radius = geofence.getRadiusMeters();
+            return new CompiledGeofence(geofence, Geofence.GeofenceType.CIRCLE,
+                GeoBounds.aroundPoint(lat, lng, radius), lat, lng, radius, null, null, null);
+        }
+
+        if (geofence.getGeofenceType() != Geofence.GeofenceType.POLYGON
+                || geofence.getPolygonCoordinates() == null || geofence.getPolygonCoordinates().isEmpty()) {
+            return empty(geofence);
+        }
+
+        List<Map<String, Double>> coordinates = geofence.getPolygonCoordinates();
+        double[] lats = new double[coordinates.size()];
+        double[] lngs = new double[coordinates.size()];
+        int n = 0;
+        for (Map<String, Double> point : coordinates) {
+            Double lat = point == null ? null : point.get("lat");
+            Double lng = point == null ? null : point.get("lng");
+            if (lat == null || lng == null) {
+                continue;
+            }
+            lats[n] = lat;
+            lngs[n] = lng;
+            n++;
+        }
+        if (n == 0) {
+            return empty(geofence);
+        }
+        if (n < lats.length) {
+            lats = Arrays.copyOf(lats, n);
+            lngs = Arrays.copyOf(lngs, n);
+        }
+
+        double[] slopes = new double[n];
+        for (int i = 0; i < n; i++) {
+            int j = (i + 1) % n;
+            slopes[i] = (lats[j] - lats[i]) / (lngs[j] - lngs[i]);
+        }
+
+        return new CompiledGeofence(geofence, Geofence.GeofenceType.POLYGON,
+            GeoBounds.ofVertices(lats, lngs), 0, 0, 0, lats, lngs, slopes);
+    }
+
+    private static CompiledGeofence empty(Geofence geofence) {
+        return new CompiledGeofence(geofence, geofence.getGeofenceType(), null, 0, 0, 0, null, null, null);
+    }
+
+    /**
+     * Reject geofences whose geometry cannot be evaluated. Called before a geofence is persisted.
+     *
+     * @throws IllegalArgumentException describing the first problem found
+     */
+    public static void validate(Geofence geofence) {
+        if (geofence.getGeofenceType() == null) {
+            throw new IllegalArgumentException("Geofence type is required");
+        }
+
+        if (geofence.getGeofenceType() == Geofence.GeofenceType.CIRCLE) {
+            requireCoordinate(geofence.getLatitude(), geofence.getLongitude(), "Geofence centre");
+            if (geofence.getRadiusMeters() == null || geofence.getRadiusMeters() <= 0) {
+                throw new IllegalArgumentException("Geofence radius must be a positive number of meters");
+            }
+            return;
+        }
+
+        List<Map<String, Double>> coordinates = geofence.getPolygonCoordinates();
+        if (coordinates == null || coordinates.size() < 3) {
+            throw new IllegalArgumentException("Polygon geofence needs at least 3 vertices");
+        }
+        for (int i = 0; i < coordinates.size(); i++) {
+            Map<String, Double> point = coordinates.get(i);
+            if (point == null) {
+                throw new IllegalArgumentException("Polygon vertex " + i + " is missing");
+            }
+            requireCoordinate(point.get("lat"), point.get("lng"), "Polygon vertex " + i);
+        }
+
+        double[][] ring = distinctRing(coordinates);
+        if (ring[0].length < 3) {
+            throw new IllegalArgumentException("Polygon geofence needs at least 3 distinct vertices");
+        }
+        if (!isSimple(ring[0], ring[1])) {
+            throw new IllegalArgumentException("Polygon geofence edges must not cross each other");
+        }
+    }
+
+    /**
+     * GeoJSON form of a polygon for the 2dsphere-indexed {@code boundary} field, or null when
+     * the vertices do not make a valid simple polygon (MongoDB refuses to index those).
+     */
+    public static GeoJsonPolygon toGeoJsonPolygon(List<Map<String, Double>> coordinates) {
+        if (coordinates == null) {
+            return null;
+        }
+        for (Map<String, Double> point : coordinates) {
+            if (point == null || point.get("lat") == null || point.get("lng") == null) {
+                return null;
+            }
+        }
+        double[][] ring = distinctRing(coordinates);
+        double[] lats = ring[0];
+        double[] lngs = ring[1];
+        if (lats.length < 3 || !isSimple(lats, lngs)) {
+            return null;
+        }
+        List<Point> points = new ArrayList<>(lats.length + 1);
+        for (int i = 0; i < lats.length; i++) {
+            points.add(new Point(lngs[i], lats[i]));
+        }
+        points.add(new Point(lngs[0], lats[0]));
+        return new GeoJsonPolygon(points);
+    }
+
+    /**
+     * Vertices with consecutive duplicates (and an explicit closing vertex) removed
+     */
+    private static double[][] distinctRing(List<Map<String, Double>> coordinates) {
+        double[] lats = new double[coordinates.size()];
+        double[] lngs = new double[coordinates.size()];
+        int n = 0;
+        for (Map<String, Double> point : coordinates) {
+            double lat = point.get("lat");
+            double lng = point.get("lng");
+            if (n > 0 && lats[n - 1] == lat && lngs[n - 1] == lng) {
+                continue;
+            }
+            lats[n] = lat;
+            lngs[n] = lng;
+            n++;
+        }
+        while (n > 1 && lats[n - 1] == lats[0] && lngs[n - 1] == lngs[0]) {
+            n--;
+        }
+        return new double[][] {Arrays.copyOf(lats, n), Arrays.copyOf(lngs, n)};
+    }
+
+    /**
+     * Whether no two non-adjacent edges of the ring touch and no edge folds back onto the next
+     */
+    private static boolean isSimple(double[] lats, double[] lngs) {
+        int n = lats.length;
+        for (int i = 0; i < n; i++) {
+            int i2 = (i + 1) % n;
+            int i3 = (i + 2) % n;
+            if (orientation(lngs[i], lats[i], lngs[i2], lats[i2], lngs[i3], lats[i3]) == 0
+                    && (lngs[i2] - lngs[i]) * (lngs[i3] - lngs[i2]) + (lats[i2] - lats[i]) * (lats[i3] - lats[i2]) < 0) {
+                return false;
+            }
+            for (int j = i + 1; j < n; j++) {
+                int j2 = (j + 1) % n;
+                if (j == i2 || j2 == i) {
+                    continue;
+                }
+                if (segmentsTouch(lngs[i], lats[i], lngs[i2], lats[i2], lngs[j], lats[j], lngs[j2], lats[j2])) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    private static boolean segmentsTouch(double ax, double ay, double bx, double by,
+                                         double cx, double cy, double dx, double dy) {
+        double d1 = orientation(cx, cy, dx, dy, ax, ay);
+        double d2 = orientation(cx, cy, dx, dy, bx, by);
+        double d3 = orientation(ax, ay, bx, by, cx, cy);
+        double d4 = orientation(ax, ay, bx, by, dx, dy);
+        if (((d1 > 0 && d2 < 0) || (d1 < 0 && d2 > 0)) && ((d3 > 0 && d4 < 0) || (d3 < 0 && d4 > 0))) {
+            return true;
+        }
+        return (d1 == 0 && onSegment(cx, cy, dx, dy, ax, ay))
+            || (d2 == 0 && onSegment(cx, cy, dx, dy, bx, by))
+            || (d3 == 0 && onSegment(ax, ay, bx, by, cx, cy))
+            || (d4 == 0 && onSegment(ax, ay, bx, by, dx, dy));
+    }
+
+    private static double orientation(double ax, double ay, double bx, double by, double px, double py) {
+        return (bx - ax) * (py - ay) - (by - ay) * (px - ax);
+    }
+
+    private static boolean onSegment(double ax, double ay, double bx, double by, double px, double py) {
+        return px >= Math.min(ax, bx) && px <= Math.max(ax, bx) && py >= Math.min(ay, by) && py <= Math.max(ay, by);
+    }
+
+    private static void requireCoordinate(Double lat, Double lng, String what) {
+        if (lat == null || lng == null) {
+            throw new IllegalArgumentException(what + " must have both latitude and longitude");
+        }
+        if (!Double.isFinite(lat) || lat < -90 || lat > 90) {
+            throw new IllegalArgumentException(what + " has an invalid latitude: " + lat);
+        }
+        if (!Double.isFinite(lng) || lng < -180 || lng > 180) {
+            throw new IllegalArgumentException(what + " has an invalid longitude: " + lng);
+        }
+    }
+
+    /**
+     * Exact containment test, equivalent to GeofencingService's circle / ray casting checks
+     */
+    public boolean contains(double latitude, double longitude) {
+        if (bounds == null || !bounds.contains(latitude, longitude)) {
+            return false;
+        }
+        if (type == Geofence.GeofenceType.CIRCLE) {
+            return GeoMath.isWithinDistance(latitude, longitude, centerLat, centerLng, radiusMeters);
+        }
+        return polygonContains(latitude, longitude);
+    }
+
+    private boolean polygonContains(double latitude, double longitude) {
+        int n = lats.length;
+        boolean inside = false;
+        for (int i = 0; i < n; i++) {
+            int j = i + 1 == n ? 0 : i + 1;
+            double lng1 = lngs[i];
+            double lng2 = lngs[j];
+            if ((lng1 <= longitude && longitude < lng2) || (lng2 <= longitude && longitude < lng1)) {
+                double latAtLng = lats[i] + slopes[i] * (longitude - lng1);
+                if (latitude < latAtLng) {
+                    inside = !inside;
+                }
+            }
+        }
+        return inside;
+    }
+
+    /**
+     * Distance in meters from the point to the geofence boundary: negative inside, positive
+     * outside, and positive infinity for a geofence that cannot contain anything. Polygon
+     * edges are measured in an equirectangular projection around the point, which keeps
+     * them straight just like the ray casting test does.
+     */
+    public double signedDistanceMeters(double latitude, double longitude) {
+        if (bounds == null) {
+            return Double.POSITIVE_INFINITY;
+        }
+        if (type == Geofence.GeofenceType.CIRCLE) {
+            return GeoMath.haversineMeters(latitude, longitude, centerLat, centerLng) - radiusMeters;
+        }
+
+        double metersPerDegree = Math.toRadians(GeoBounds.EARTH_RADIUS_METERS);
+        double lngScale = metersPerDegree * Math.cos(Math.toRadians(latitude));
+        double best = Double.POSITIVE_INFINITY;
+        int n = lats.length;
+        for (int i = 0; i < n; i++) {
+            int j = i + 1 == n ? 0 : i + 1;
+            double ax = (lngs[i] - longitude) * lngScale;
+            double ay = (lats[i] - latitude) * metersPerDegree;
+            double bx = (lngs[j] - longitude) * lngScale;
+            double by = (lats[j] - latitude) * metersPerDegree;
+            double dx = bx - ax;
+            double dy = by - ay;
+            double lengthSquared = dx * dx + dy * dy;
+            double t = lengthSquared == 0 ? 0 : Math.max(0, Math.min(1, -(ax * dx + ay * dy) / lengthSquared));
+            double px = ax + t * dx;
+            double py = ay + t * dy;
+            best = Math.min(best, px * px + py * py);
+        }
+        double distance = Math.sqrt(best);
+        return polygonContains(latitude, longitude) ? -distance : distance;
+    }
+
+    /**
+     * Classify a whole area against the geofence. INSIDE and OUTSIDE are guaranteed
+     * to agree with {@link #contains} for every point of the area; anything that cannot
+     * be proven either way is BOUNDARY.
+     */
+    public Relation relate(GeoBounds area) {
+        if (bounds == null || !bounds.intersects(area)) {
+            return Relation.OUTSIDE;
+        }
+        if (type == Geofence.GeofenceType.CIRCLE) {
+            return relateCircle(area);
+        }
+        return relatePolygon(area);
+    }
+
+    private Relation relateCircle(GeoBounds area) {
+        // Every point of the area lies within `reach` of its centre, so the triangle
+        // inequality bounds the distance from the geofence centre to any of them.
+        double lat = area.centerLat();
+        double lng = area.centerLng();
+        double reach = 0;
+        double[] edgeLats = {area.getMinLat(), lat, area.getMaxLat()};
+        double[] edgeLngs = {area.getMinLng(), lng, area.getMaxLng()};
+        for (double edgeLat : edgeLats) {
+            for (double edgeLng : edgeLngs) {
+                reach = Math.max(reach, GeoMath.haversineMeters(lat, lng, edgeLat, edgeLng));
+            }
+        }
+        reach = reach * REACH_SLACK + REACH_SLACK_METERS;
+
+        double distance = GeoMath.haversineMeters(centerLat, centerLng, lat, lng);
+        if (distance + reach < radiusMeters) {
+            return Relation.INSIDE;
+        }
+        if (distance - reach > radiusMeters) {
+            return Relation.OUTSIDE;
+        }
+        return Relation.BOUNDARY;
+    }
+
+    private Relation relatePolygon(GeoBounds area) {
+        double minLat = area.getMinLat() - EDGE_EPSILON_DEGREES;
+        double maxLat = area.getMaxLat() + EDGE_EPSILON_DEGREES;
+        double minLng = area.getMinLng() - EDGE_EPSILON_DEGREES;
+        double maxLng = area.getMaxLng() + EDGE_EPSILON_DEGREES;
+
+        int n = lats.length;
+        for (int i = 0; i < n; i++) {
+            int j = i + 1 == n ? 0 : i + 1;
+            if (segmentTouchesBox(lngs[i], lats[i], lngs[j], lats[j], minLng, minLat, maxLng, maxLat)) {
+                return Relation.BOUNDARY;
+            }
+        }
+        // No edge reaches the area, so all of it is on the same side of the boundary
+        return polygonContains(area.centerLat(), area.centerLng()) ? Relation.INSIDE : Relation.OUTSIDE;
+    }
+
+    /**
+     * Liang-Barsky clip of segment (x1,y1)-(x2,y2) against the box
+     */
+    private static boolean segmentTouchesBox(double x1, double y1, double x2, double y2,
+                                             double minX, double minY, double maxX, double maxY) {
+        double dx = x2 - x1;
+        double dy = y2 - y1;
+        double[] p = {-dx, dx, -dy, dy};
+        double[] q = {x1 - minX, maxX - x1, y1 - minY, maxY - y1};
+        double t0 = 0;
+        double t1 = 1;
+        for (int k = 0; k < 4; k++) {
+            if (p[k] == 0) {
+                if (q[k] < 0) {
+                    return false;
+                }
+            } else {
+                double t = q[k] / p[k];
+                if (p[k] < 0) {
+                    t0 = Math.max(t0, t);
+                } else {
+                    t1 = Math.min(t1, t);
+                }
+                if (t0 > t1) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Whether both compile to the same geometry
+     */
+    public boolean sameShape(CompiledGeofence other) {
+        if (type != other.type || (bounds == null) != (other.bounds == null)) {
+            return false;
+        }
+        if (bounds == null) {
+            return true;
+        }
+        if (type == Geofence.GeofenceType.CIRCLE) {
+            return centerLat == other.centerLat && centerLng == other.centerLng && radiusMeters == other.radiusMeters;
+        }
+        return Arrays.equals(lats, other.lats) && Arrays.equals(lngs, other.lngs);
+    }
+
+    public Geofence getGeofence() {
+        return geofence;
+    }
+
+    public String getId() {
+        return geofence.getId();
+    }
+
+    public Geofence.GeofenceType getType() {
+        return type;
+    }
+
+    /**
+     * Bounding box of the shape, or null for geofences that cannot contain any point
+     */
+    public GeoBounds getBounds() {
+        return bounds;
+    }
+
+    public boolean isCircle() {
+        return type == Geofence.GeofenceType.CIRCLE && bounds != null;
+    }
+
+    public double getCenterLat() {
+        return centerLat;
+    }
+
+    public double getCenterLng() {
+        return centerLng;
+    }
+
+    public double getRadiusMeters() {
+        return radiusMeters;
+    }
+
+    public int vertexCount() {
+        return lats == null ? 0 : lats.length;
+    }
+
+    public double vertexLat(int i) {
+        return lats[i];
+    }
+
+    public double vertexLng(int i) {
+        return lngs[i];
+    }
+}
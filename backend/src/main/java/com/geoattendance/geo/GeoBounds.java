@@ -0,0 +1,142 @@
+package com.geoattendance.geo;
+
+/**
+ * Immutable latitude/longitude bounding box (degrees, inclusive edges).
+ */
+public final class GeoBounds {
+
+    /** Same earth radius the haversine in GeofencingService uses */
+    public static final double EARTH_RADIUS_METERS = 6_371_000d;
+
+    // Guards against rounding in the containment tests the box is used to pre-filter
+    private static final double EPSILON_DEGREES = 1e-9;
+
+    private final double minLat;
+    private final double minLng;
+    private final double maxLat;
+    private final double maxLng;
+
+    public GeoBounds(double minLat, double minLng, double maxLat, double maxLng) {
+        this.minLat = minLat;
+        this.minLng = minLng;
+        this.maxLat = maxLat;
+        this.maxLng = maxLng;
+    }
+
+    /**
+     * Smallest box that contains every point within {@code radiusMeters} (great-circle)
+     * of the given centre. Falls back to the full longitude range near the poles or
+     * across the antimeridian so the box is never too small.
+     */
+    public static GeoBounds aroundPoint(double latitude, double longitude, double radiusMeters) {
+        double angular = radiusMeters / EARTH_RADIUS_METERS;
+        double latRad = Math.toRadians(latitude);
+        double minLatRad = latRad - angular;
+        double maxLatRad = latRad + angular;
+
+        double minLng = -180d;
+        double maxLng = 180d;
+        if (minLatRad > -Math.PI / 2 && maxLatRad < Math.PI / 2) {
+            double deltaLng = Math.toDegrees(Math.asin(Math.min(1d, Math.sin(angular) / Math.cos(latRad))));
+            if (longitude - deltaLng >= -180d && longitude + deltaLng <= 180d) {
+                minLng = longitude - deltaLng;
+                maxLng = longitude + deltaLng;
+            }
+        }
+
+        return new GeoBounds(
+            Math.max(-90d, Math.toDegrees(minLatRad)) - EPSILON_DEGREES,
+            minLng - EPSILON_DEGREES,
+            Math.min(90d, Math.toDegrees(maxLatRad)) + EPSILON_DEGREES,
+            maxLng + EPSILON_DEGREES
+        );
+    }
+
+    /**
+     * Box spanning the given vertices, padded by a rounding epsilon.
+     */
+    public static GeoBounds ofVertices(double[] lats, double[] lngs) {
+        double minLat = Double.POSITIVE_INFINITY;
+        double minLng = Double.POSITIVE_INFINITY;
+        double maxLat = Double.NEGATIVE_INFINITY;
+        double maxLng = Double.NEGATIVE_INFINITY;
+        for (int i = 0; i < lats.length; i++) {
+            minLat = Math.min(minLat, lats[i]);
+            maxLat = Math.max(maxLat, lats[i]);
+            minLng = Math.min(minLng, lngs[i]);
+            maxLng = Math.max(maxLng, lngs[i]);
+        }
+        return new GeoBounds(minLat - EPSILON_DEGREES, minLng - EPSILON_DEGREES,
+            maxLat + EPSILON_DEGREES, maxLng + EPSILON_DEGREES);
+    }
+
+    public boolean contains(double latitude, double longitude) {
+        return latitude >= minLat && latitude <= maxLat
+            && longitude >= minLng && longitude <= maxLng;
+    }
+
+    public boolean intersects(GeoBounds other) {
+        return other.minLat <= maxLat && other.maxLat >= minLat
+            && other.minLng <= maxLng && other.maxLng >= minLng;
+    }
+
+    /**
+     * Lower bound on the distance in meters from the point to anything inside the box; zero
+     * when the point is inside. Uses the flattest latitude the box and point span, so at
+     * geofence scales it never exceeds the true great-circle distance.
+     */
+    public double distanceLowerBoundMeters(double latitude, double longitude) {
+        double latGap = latitude < minLat ? minLat - latitude : latitude > maxLat ? latitude - maxLat : 0;
+        double lngGap = 0;
+        if (longitude < minLng || longitude > maxLng) {
+            double west = ((minLng - longitude) % 360 + 360) % 360;
+            double east = ((longitude - maxLng) % 360 + 360) % 360;
+            lngGap = Math.min(west, east);
+        }
+        if (latGap == 0 && lngGap == 0) {
+            return 0;
+        }
+        double maxAbsLat = Math.min(90d, Math.max(Math.abs(latitude), Math.max(Math.abs(minLat), Math.abs(maxLat))));
+        double x = Math.toRadians(lngGap) * Math.cos(Math.toRadians(maxAbsLat));
+        double y = Math.toRadians(latGap);
+        return Math.sqrt(x * x + y * y) * EARTH_RADIUS_METERS;
+    }
+
+    public GeoBounds union(GeoBounds other) {
+        return new GeoBounds(
+            Math.min(minLat, other.minLat),
+            Math.min(minLng, other.minLng),
+            Math.max(maxLat, other.maxLat),
+            Math.max(maxLng, other.maxLng)
+        );
+    }
+
+    public double centerLat() {
+        return (minLat + maxLat) / 2;
+    }
+
+    public double centerLng() {
+        return (minLng + maxLng) / 2;
+    }
+
+    public double getMinLat() {
+        return minLat;
+    }
+
+    public double getMinLng() {
+        return minLng;
+    }
+
+    public double getMaxLat() {
+        return maxLat;
+    }
+
+    public double getMaxLng() {
+        return maxLng;
+    }
+
+    @Override
+    public String toString() {
+        return "GeoBounds[" + minLat + "," + minLng + " .. " + maxLat + "," + maxLng + "]";
+    }
+}
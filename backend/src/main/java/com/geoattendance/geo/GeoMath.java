@@ -0,0 +1,71 @@
+package com.geoattendance.geo;
+
+/**
+ * Primitive great-circle helpers shared by the geofence evaluation code.
+ */
+public final class GeoMath {
+
+    // The equirectangular estimate is within 0.15% of the haversine for distances up to
+    // 100 km below 85 degrees of latitude; decisions inside this band defer to the haversine.
+    private static final double FAST_PATH_BAND = 0.01;
+    private static final double FAST_PATH_MAX_RADIUS_METERS = 100_000d;
+    private static final double FAST_PATH_MAX_LATITUDE = 85d;
+
+    private GeoMath() {
+    }
+
+    /**
+     * Distance between two points using the Haversine formula (in meters)
+     */
+    public static double haversineMeters(double lat1, double lng1, double lat2, double lng2) {
+        double dLat = Math.toRadians(lat2 - lat1);
+        double dLng = Math.toRadians(lng2 - lng1);
+
+        double a = Math.sin(dLat / 2) * Math.sin(dLat / 2) +
+                   Math.cos(Math.toRadians(lat1)) * Math.cos(Math.toRadians(lat2)) *
+                   Math.sin(dLng / 2) * Math.sin(dLng / 2);
+
+        double c = 2 * Math.atan2(Math.sqrt(a), Math.sqrt(1 - a));
+
+        return GeoBounds.EARTH_RADIUS_METERS * c;
+    }
+
+    /**
+     * Same answer as {@code haversineMeters(lat1, lng1, lat2, lng2) <= radiusMeters}, but
+     * decides clear-cut cases with a latitude lower bound and an equirectangular estimate
+     * compared against the squared radius. Only points in the ambiguous band around the
+     * radius pay for the full haversine.
+     */
+    public static boolean isWithinDistance(double lat1, double lng1, double lat2, double lng2, double radiusMeters) {
+        double dLat = Math.toRadians(lat2 - lat1);
+        double radiusRadians = radiusMeters / GeoBounds.EARTH_RADIUS_METERS;
+
+        // The latitude difference alone is a lower bound on the great-circle distance
+        if (Math.abs(dLat) > radiusRadians * (1 + FAST_PATH_BAND)) {
+            return false;
+        }
+
+        if (radiusMeters <= FAST_PATH_MAX_RADIUS_METERS
+                && Math.abs(lat1) <= FAST_PATH_MAX_LATITUDE && Math.abs(lat2) <= FAST_PATH_MAX_LATITUDE) {
+            double dLngDegrees = lng2 - lng1;
+            if (dLngDegrees > 180) {
+                dLngDegrees -= 360;
+            } else if (dLngDegrees < -180) {
+                dLngDegrees += 360;
+            }
+            double x = Math.toRadians(dLngDegrees) * Math.cos(Math.toRadians((lat1 + lat2) / 2));
+            double squared = x * x + dLat * dLat;
+
+            double inner = radiusRadians * (1 - FAST_PATH_BAND);
+            if (squared < inner * inner) {
+                return true;
+            }
+            double outer = radiusRadians * (1 + FAST_PATH_BAND);
+            if (squared > outer * outer) {
+                return false;
+            }
+        }
+
+        return haversineMeters(lat1, lng1, lat2, lng2) <= radiusMeters;
+    }
+}
@@ -0,0 +1,116 @@
+package com.geoattendance.geo;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Packed JSON encoding of one manager's active geofences, for devices that evaluate
+ * containment locally and only report transitions:
+ * <pre>
+ * {"v":1,"g":[{"id":"..","n":"HQ","c":[lat,lng,radiusMeters]},
+ *             {"id":"..","n":"Yard","p":[lat,lng,dLat,dLng,...]}]}
+ * </pre>
+ * Coordinates are integers in 1e-6 degrees (about 11 cm); polygon vertices after the first
+ * are deltas from the previous one. Circles are haversine distances, polygons the planar
+ * ray casting test. The ETag hashes the encoded bytes, so it only changes when this
+ * manager's geofences do.
+ */
+public final class GeofenceCatalog {
+
+    public static final int FORMAT_VERSION = 1;
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+    private static final double E6 = 1_000_000d;
+
+    private final long snapshotVersion;
+    private final int size;
+    private final byte[] body;
+    private final String etag;
+
+    private GeofenceCatalog(long snapshotVersion, int size, byte[] body) {
+        this.snapshotVersion = snapshotVersion;
+        this.size = size;
+        this.body = body;
+        this.etag = "\"" + hash(body) + "\"";
+    }
+
+    public static GeofenceCatalog encode(long snapshotVersion, List<CompiledGeofence> geofences) {
+        List<Map<String, Object>> entries = new ArrayList<>(geofences.size());
+        for (CompiledGeofence compiled : geofences) {
+            if (compiled.getBounds() == null) {
+                continue;
+            }
+            Map<String, Object> entry = new LinkedHashMap<>();
+            entry.put("id", compiled.getId());
+            entry.put("n", compiled.getGeofence().getName());
+            if (compiled.isCircle()) {
+                entry.put("c", new long[] {
+                    e6(compiled.getCenterLat()), e6(compiled.getCenterLng()), Math.round(compiled.getRadiusMeters())
+                });
+            } else {
+                long[] packed = new long[compiled.vertexCount() * 2];
+                long prevLat = 0;
+                long prevLng = 0;
+                for (int i = 0; i < compiled.vertexCount(); i++) {
+                    long lat = e6(compiled.vertexLat(i));
+                    long lng = e6(compiled.vertexLng(i));
+                    packed[2 * i] = lat - prevLat;
+                    packed[2 * i + 1] = lng - prevLng;
+                    prevLat = lat;
+                    prevLng = lng;
+                }
+                entry.put("p", packed);
+            }
+            entries.add(entry);
+        }
+
+        Map<String, Object> root = new LinkedHashMap<>();
+        root.put("v", FORMAT_VERSION);
+        root.put("g", entries);
+        try {
+            return new GeofenceCatalog(snapshotVersion, entries.size(), MAPPER.writeValueAsBytes(root));
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Could not encode geofence catalog", e);
+        }
+    }
+
+    private static long e6(double degrees) {
+        return Math.round(degrees * E6);
+    }
+
+    private static String hash(byte[] bytes) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(bytes);
+            return HexFormat.of().formatHex(digest, 0, 12);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    /**
+     * Version of the geofence snapshot this catalog was encoded from
+     */
+    public long getSnapshotVersion() {
+        return snapshotVersion;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public byte[] getBody() {
+        return body;
+    }
+
+    public String getEtag() {
+        return etag;
+    }
+}
@@ -0,0 +1,108 @@
+package com.geoattendance.geo;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Cache of geohash cells that are known to lie entirely inside one geofence, entirely
+ * outside all of them, or across a boundary. Only points in boundary cells need the
+ * exact containment test.
+ */
+public final class GeofenceCellCache {
+
+    public enum Kind {
+        INSIDE, OUTSIDE, BOUNDARY
+    }
+
+    /**
+     * Classification of one cell; {@code geofence} is set only for INSIDE cells
+     */
+    public static final class Cell {
+        private static final Cell OUTSIDE = new Cell(Kind.OUTSIDE, null);
+        private static final Cell BOUNDARY = new Cell(Kind.BOUNDARY, null);
+
+        private final Kind kind;
+        private final CompiledGeofence geofence;
+
+        private Cell(Kind kind, CompiledGeofence geofence) {
+            this.kind = kind;
+            this.geofence = geofence;
+        }
+
+        public Kind getKind() {
+            return kind;
+        }
+
+        public CompiledGeofence getGeofence() {
+            return geofence;
+        }
+    }
+
+    private final int precision;
+    private final int maxEntries;
+    private final Map<String, Cell> cells = new ConcurrentHashMap<>();
+
+    public GeofenceCellCache(int precision, int maxEntries) {
+        // Below precision 4 cells get too large for the circle reach bound to stay tight
+        this.precision = Math.max(4, Math.min(Geohash.MAX_PRECISION, precision));
+        this.maxEntries = maxEntries;
+    }
+
+    public String cellOf(double latitude, double longitude) {
+        return Geohash.encode(latitude, longitude, precision);
+    }
+
+    public Cell get(String cell) {
+        return cells.get(cell);
+    }
+
+    public void put(String cell, Cell classification) {
+        if (cells.size() >= maxEntries) {
+            cells.clear();
+        }
+        cells.put(cell, classification);
+    }
+
+    public void remove(String cell, Cell classification) {
+        cells.remove(cell, classification);
+    }
+
+    /**
+     * Drop every cached cell that overlaps the area
+     */
+    public int invalidate(GeoBounds area) {
+        int before = cells.size();
+        cells.keySet().removeIf(cell -> Geohash.bounds(cell).intersects(area));
+        return before - cells.size();
+    }
+
+    public void clear() {
+        cells.clear();
+    }
+
+    public int size() {
+        return cells.size();
+    }
+
+    public int getPrecision() {
+        return precision;
+    }
+
+    /**
+     * Classify a cell against the candidate geofences, honouring their order:
+     * the first geofence that is not entirely outside decides the result.
+     */
+    public static Cell classify(GeoBounds cell, Iterable<CompiledGeofence> candidates) {
+        for (CompiledGeofence candidate : candidates) {
+            switch (candidate.relate(cell)) {
+                case OUTSIDE:
+                    continue;
+                case INSIDE:
+                    return new Cell(Kind.INSIDE, candidate);
+                default:
+                    return Cell.BOUNDARY;
+            }
+        }
+        return Cell.OUTSIDE;
+    }
+}
@@ -0,0 +1,83 @@
+package com.geoattendance.geo;
+
+import com.geoattendance.entity.Geofence;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Immutable view of every active geofence, compiled for evaluation and indexed both globally
+ * and per manager ({@code createdById}). A new snapshot with a higher version replaces the old
+ * one whenever a geofence changes; readers never lock and never see a half-built state.
+ */
+public final class GeofenceSnapshot {
+
+    private final long version;
+    private final Instant builtAt;
+    private final StrTree<CompiledGeofence> index;
+    private final Map<String, StrTree<CompiledGeofence>> managerIndexes;
+    private final Map<String, List<Geofence>> managerGeofences;
+
+    public GeofenceSnapshot(long version, List<CompiledGeofence> geofences) {
+        // Indexes return matches in this order, so "first match" follows CompiledGeofence.PRECEDENCE
+        geofences = geofences.stream().sorted(CompiledGeofence.PRECEDENCE).toList();
+        this.version = version;
+        this.builtAt = Instant.now();
+        this.index = new StrTree<>(geofences, CompiledGeofence::getBounds);
+
+        Map<String, List<CompiledGeofence>> grouped = new LinkedHashMap<>();
+        for (CompiledGeofence compiled : geofences) {
+            String managerId = compiled.getGeofence().getCreatedById();
+            if (managerId != null) {
+                grouped.computeIfAbsent(managerId, id -> new ArrayList<>()).add(compiled);
+            }
+        }
+        Map<String, StrTree<CompiledGeofence>> indexes = new HashMap<>();
+        Map<String, List<Geofence>> lists = new HashMap<>();
+        grouped.forEach((managerId, compiled) -> {
+            indexes.put(managerId, new StrTree<>(compiled, CompiledGeofence::getBounds));
+            lists.put(managerId, compiled.stream().map(CompiledGeofence::getGeofence).toList());
+        });
+        this.managerIndexes = Map.copyOf(indexes);
+        this.managerGeofences = Map.copyOf(lists);
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    public Instant getBuiltAt() {
+        return builtAt;
+    }
+
+    public int size() {
+        return index.size();
+    }
+
+    /**
+     * Index over all active geofences
+     */
+    public StrTree<CompiledGeofence> index() {
+        return index;
+    }
+
+    /**
+     * Index over one manager's active geofences (all of them for a null manager),
+     * or null when the manager has none
+     */
+    public StrTree<CompiledGeofence> index(String managerId) {
+        return managerId == null ? index : managerIndexes.get(managerId);
+    }
+
+    /**
+     * One manager's active geofences, in {@link CompiledGeofence#PRECEDENCE} order
+     */
+    public List<Geofence> activeGeofences(String managerId) {
+        return managerGeofences.getOrDefault(managerId, Collections.emptyList());
+    }
+}
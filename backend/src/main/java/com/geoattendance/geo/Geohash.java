@@ -0,0 +1,97 @@
+package com.geoattendance.geo;
+
+import java.util.Arrays;
+
+/**
+ * Standard base32 geohash encoding and cell bounds.
+ */
+public final class Geohash {
+
+    public static final int MAX_PRECISION = 12;
+
+    private static final char[] BASE32 = "0123456789bcdefghjkmnpqrstuvwxyz".toCharArray();
+    private static final int[] DECODE = new int[128];
+
+    static {
+        Arrays.fill(DECODE, -1);
+        for (int i = 0; i < BASE32.length; i++) {
+            DECODE[BASE32[i]] = i;
+        }
+    }
+
+    private Geohash() {
+    }
+
+    /**
+     * Geohash of the cell containing the point, {@code precision} characters long
+     */
+    public static String encode(double latitude, double longitude, int precision) {
+        double minLat = -90, maxLat = 90;
+        double minLng = -180, maxLng = 180;
+        char[] hash = new char[precision];
+        boolean evenBit = true;
+        for (int c = 0; c < precision; c++) {
+            int value = 0;
+            for (int bit = 0; bit < 5; bit++) {
+                if (evenBit) {
+                    double mid = (minLng + maxLng) / 2;
+                    if (longitude >= mid) {
+                        value = (value << 1) | 1;
+                        minLng = mid;
+                    } else {
+                        value <<= 1;
+                        maxLng = mid;
+                    }
+                } else {
+                    double mid = (minLat + maxLat) / 2;
+                    if (latitude >= mid) {
+                        value = (value << 1) | 1;
+                        minLat = mid;
+                    } else {
+                        value <<= 1;
+                        maxLat = mid;
+                    }
+                }
+                evenBit = !evenBit;
+            }
+            hash[c] = BASE32[value];
+        }
+        return new String(hash);
+    }
+
+    /**
+     * Exact bounds of a geohash cell
+     */
+    public static GeoBounds bounds(String geohash) {
+        double minLat = -90, maxLat = 90;
+        double minLng = -180, maxLng = 180;
+        boolean evenBit = true;
+        for (int c = 0; c < geohash.length(); c++) {
+            char ch = geohash.charAt(c);
+            int value = ch < DECODE.length ? DECODE[ch] : -1;
+            if (value < 0) {
+                throw new IllegalArgumentException("Invalid geohash character '" + ch + "' in " + geohash);
+            }
+            for (int bit = 4; bit >= 0; bit--) {
+                boolean set = ((value >> bit) & 1) == 1;
+                if (evenBit) {
+                    double mid = (minLng + maxLng) / 2;
+                    if (set) {
+                        minLng = mid;
+                    } else {
+                        maxLng = mid;
+                    }
+                } else {
+                    double mid = (minLat + maxLat) / 2;
+                    if (set) {
+                        minLat = mid;
+                    } else {
+                        maxLat = mid;
+                    }
+                }
+                evenBit = !evenBit;
+            }
+        }
+        return new GeoBounds(minLat, minLng, maxLat, maxLng);
+    }
+}
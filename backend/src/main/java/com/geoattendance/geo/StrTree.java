@@ -0,0 +1,232 @@
+package com.geoattendance.geo;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.function.Function;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * Immutable R-tree bulk loaded with the Sort-Tile-Recursive packing algorithm.
+ * Queries return the matching items in the order they were supplied to the
+ * constructor, so callers that rely on "first match wins" keep their semantics.
+ * Items without bounds are never returned.
+ */
+public final class StrTree<T> {
+
+    private static final int NODE_CAPACITY = 8;
+
+    private final List<T> items;
+    private final GeoBounds[] itemBounds;
+    private final Node root;
+
+    public StrTree(List<T> items, Function<? super T, GeoBounds> boundsFunction) {
+        this.items = List.copyOf(items);
+        this.itemBounds = new GeoBounds[this.items.size()];
+
+        List<Node> leaves = new ArrayList<>();
+        for (int i = 0; i < this.items.size(); i++) {
+            GeoBounds bounds = boundsFunction.apply(this.items.get(i));
+            itemBounds[i] = bounds;
+            if (bounds != null) {
+                leaves.add(new Node(bounds, i));
+            }
+        }
+        this.root = leaves.isEmpty() ? null : pack(leaves);
+    }
+
+    public int size() {
+        return items.size();
+    }
+
+    public boolean isEmpty() {
+        return items.isEmpty();
+    }
+
+    /**
+     * All items, in construction order.
+     */
+    public List<T> items() {
+        return items;
+    }
+
+    public GeoBounds boundsOf(int ordinal) {
+        return itemBounds[ordinal];
+    }
+
+    /**
+     * Items whose bounding box covers the point.
+     */
+    public List<T> query(double latitude, double longitude) {
+        if (root == null || !root.bounds.contains(latitude, longitude)) {
+            return Collections.emptyList();
+        }
+        OrdinalCollector hits = new OrdinalCollector();
+        Node[] stack = new Node[32];
+        int depth = 0;
+        stack[depth++] = root;
+        while (depth > 0) {
+            Node node = stack[--depth];
+            if (node.children == null) {
+                hits.add(node.ordinal);
+                continue;
+            }
+            for (Node child : node.children) {
+                if (child.bounds.contains(latitude, longitude)) {
+                    if (depth == stack.length) {
+                        stack = Arrays.copyOf(stack, depth * 2);
+                    }
+                    stack[depth++] = child;
+                }
+            }
+        }
+        return hits.toItems(items);
+    }
+
+    /**
+     * Items whose bounding box intersects the given area.
+     */
+    public List<T> query(GeoBounds area) {
+        if (root == null || !root.bounds.intersects(area)) {
+            return Collections.emptyList();
+        }
+        OrdinalCollector hits = new OrdinalCollector();
+        Node[] stack = new Node[32];
+        int depth = 0;
+        stack[depth++] = root;
+        while (depth > 0) {
+            Node node = stack[--depth];
+            if (node.children == null) {
+                hits.add(node.ordinal);
+                continue;
+            }
+            for (Node child : node.children) {
+                if (child.bounds.intersects(area)) {
+                    if (depth == stack.length) {
+                        stack = Arrays.copyOf(stack, depth * 2);
+                    }
+                    stack[depth++] = child;
+                }
+            }
+        }
+        return hits.toItems(items);
+    }
+
+    /**
+     * Smallest {@code distance} over all items, or {@code limit} if none is smaller.
+     * Nodes are visited best-first by {@code lowerBound}, which must never exceed the
+     * distance of an item inside the box, and pruned once they cannot beat the best so far.
+     */
+    public double minDistance(ToDoubleFunction<GeoBounds> lowerBound, ToDoubleFunction<? super T> distance, double limit) {
+        if (root == null) {
+            return limit;
+        }
+        double best = limit;
+        PriorityQueue<Candidate> queue = new PriorityQueue<>(Comparator.comparingDouble(c -> c.bound));
+        queue.add(new Candidate(root, lowerBound.applyAsDouble(root.bounds)));
+        while (!queue.isEmpty()) {
+            Candidate next = queue.poll();
+            if (next.bound >= best) {
+                break;
+            }
+            Node node = next.node;
+            if (node.children == null) {
+                best = Math.min(best, distance.applyAsDouble(items.get(node.ordinal)));
+                continue;
+            }
+            for (Node child : node.children) {
+                double bound = lowerBound.applyAsDouble(child.bounds);
+                if (bound < best) {
+                    queue.add(new Candidate(child, bound));
+                }
+            }
+        }
+        return best;
+    }
+
+    private static Node pack(List<Node> level) {
+        while (level.size() > 1) {
+            level = packLevel(level);
+        }
+        return level.get(0);
+    }
+
+    private static List<Node> packLevel(List<Node> nodes) {
+        int parentCount = (nodes.size() + NODE_CAPACITY - 1) / NODE_CAPACITY;
+        int sliceCount = (int) Math.ceil(Math.sqrt(parentCount));
+        int sliceSize = sliceCount * NODE_CAPACITY;
+
+        List<Node> sorted = new ArrayList<>(nodes);
+        sorted.sort(Comparator.comparingDouble(n -> n.bounds.centerLng()));
+
+        List<Node> parents = new ArrayList<>(parentCount);
+        for (int sliceStart = 0; sliceStart < sorted.size(); sliceStart += sliceSize) {
+            List<Node> slice = new ArrayList<>(sorted.subList(sliceStart, Math.min(sliceStart + sliceSize, sorted.size())));
+            slice.sort(Comparator.comparingDouble(n -> n.bounds.centerLat()));
+            for (int start = 0; start < slice.size(); start += NODE_CAPACITY) {
+                List<Node> group = slice.subList(start, Math.min(start + NODE_CAPACITY, slice.size()));
+                parents.add(new Node(group.toArray(new Node[0])));
+            }
+        }
+        return parents;
+    }
+
+    private static final class Node {
+        private final GeoBounds bounds;
+        private final Node[] children;
+        private final int ordinal;
+
+        private Node(GeoBounds bounds, int ordinal) {
+            this.bounds = bounds;
+            this.children = null;
+            this.ordinal = ordinal;
+        }
+
+        private Node(Node[] children) {
+            GeoBounds union = children[0].bounds;
+            for (int i = 1; i < children.length; i++) {
+                union = union.union(children[i].bounds);
+            }
+            this.bounds = union;
+            this.children = children;
+            this.ordinal = -1;
+        }
+    }
+
+    private static final class Candidate {
+        private final Node node;
+        private final double bound;
+
+        private Candidate(Node node, double bound) {
+            this.node = node;
+            this.bound = bound;
+        }
+    }
+
+    private static final class OrdinalCollector {
+        private int[] ordinals = new int[8];
+        private int count;
+
+        private void add(int ordinal) {
+            if (count == ordinals.length) {
+                ordinals = Arrays.copyOf(ordinals, count * 2);
+            }
+            ordinals[count++] = ordinal;
+        }
+
+        private <T> List<T> toItems(List<T> items) {
+            if (count == 0) {
+                return Collections.emptyList();
+            }
+            Arrays.sort(ordinals, 0, count);
+            List<T> result = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                result.add(items.get(ordinals[i]));
+            }
+            return result;
+        }
+    }
+}
@@ -0,0 +1,137 @@
+package com.geoattendance.migration;
+
+import com.geoattendance.entity.AttendanceRecord;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.BulkOperationException;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.index.CompoundIndexDefinition;
+import org.springframework.data.mongodb.core.index.PartialIndexFilter;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDate;
+import java.util.Iterator;
+import java.util.stream.Stream;
+
+/**
+ * Brings attendance records saved by older versions up to date on every start. Runs while the
+ * context is being built, so the web server and the schedulers only start once the unique
+ * index is in place; if it cannot be created, startup fails.
+ * <p>
+ * Records without a {@code version} get version 0: Spring Data treats a null version as a new
+ * document and would try to insert it again on the next save.
+ * <p>
+ * {@code workDate} is backfilled and the unique (userId, workDate) index ensured. The index
+ * only covers records that have a work date, so it can be built first; the backfill then gives
+ * each user's earliest record of a day its work date. Any further records of the same day keep
+ * none and are logged: they still show up in date-range history, but no longer in today lookups.
+ * The backfill walks records by (userId, checkInTime), so that index is ensured first.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class AttendanceRecordMigration {
+
+    private static final int BATCH_SIZE = 1000;
+
+    private final MongoTemplate mongoTemplate;
+
+    @PostConstruct
+    public void migrate() {
+        try {
+            long versioned = mongoTemplate.updateMulti(new Query(Criteria.where("version").exists(false)),
+                new Update().set("version", 0L), AttendanceRecord.class).getModifiedCount();
+            if (versioned > 0) {
+                log.info("Initialised version on {} attendance records", versioned);
+            }
+        } catch (Exception e) {
+            log.warn("Could not initialise attendance record versions: {}", e.getMessage());
+        }
+        try {
+            mongoTemplate.indexOps(AttendanceRecord.class).ensureIndex(
+                new CompoundIndexDefinition(new Document("userId", 1).append("workDate", 1))
+                    .unique()
+                    .partial(PartialIndexFilter.of(Criteria.where("workDate").exists(true)))
+                    .named("user_work_date"));
+        } catch (Exception e) {
+            // Check-in, the sweeps and the scheduler lease all rely on this index; don't serve without it
+            throw new IllegalStateException("Could not ensure the unique (userId, workDate) index on attendance records: "
+                + e.getMessage(), e);
+        }
+        try {
+            mongoTemplate.indexOps(AttendanceRecord.class).ensureIndex(
+                new CompoundIndexDefinition(new Document("userId", 1).append("checkInTime", 1))
+                    .named("user_check_in"));
+        } catch (Exception e) {
+            log.warn("Could not ensure the (userId, checkInTime) index: {}", e.getMessage());
+        }
+        try {
+            backfillWorkDates();
+        } catch (Exception e) {
+            log.warn("Could not migrate attendance work dates: {}", e.getMessage());
+        }
+    }
+
+    private void backfillWorkDates() {
+        Query query = new Query(Criteria.where("workDate").exists(false).and("checkInTime").ne(null))
+            .with(Sort.by("userId", "checkInTime"));
+        query.fields().include("userId", "checkInTime");
+
+        BulkOperations ops = null;
+        int pending = 0;
+        int updated = 0;
+        int duplicates = 0;
+        String lastUserId = null;
+        LocalDate lastDate = null;
+        try (Stream<AttendanceRecord> stream = mongoTemplate.stream(query, AttendanceRecord.class)) {
+            Iterator<AttendanceRecord> records = stream.iterator();
+            while (records.hasNext()) {
+                AttendanceRecord record = records.next();
+                LocalDate workDate = record.getCheckInTime().toLocalDate();
+                if (record.getUserId() != null && record.getUserId().equals(lastUserId) && workDate.equals(lastDate)) {
+                    duplicates++;
+                    continue;
+                }
+                lastUserId = record.getUserId();
+                lastDate = workDate;
+
+                if (ops == null) {
+                    ops = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, AttendanceRecord.class);
+                }
+                ops.updateOne(new Query(Criteria.where("_id").is(record.getId())), new Update().set("workDate", workDate));
+                if (++pending == BATCH_SIZE) {
+                    updated += execute(ops);
+                    ops = null;
+                    pending = 0;
+                }
+            }
+        }
+        if (ops != null) {
+            updated += execute(ops);
+        }
+        if (updated > 0 || duplicates > 0) {
+            log.info("Backfilled workDate on {} attendance records; {} further records of an already covered day left without",
+                updated, duplicates);
+        }
+    }
+
+    /**
+     * Run one batch; records whose day is already taken by a record with a work date fail on
+     * the unique index and are left as they are
+     */
+    private int execute(BulkOperations ops) {
+        try {
+            return ops.execute().getModifiedCount();
+        } catch (BulkOperationException e) {
+            log.warn("{} attendance records collide with an existing record for the same day", e.getErrors().size());
+            return e.getResult().getModifiedCount();
+        }
+    }
+}
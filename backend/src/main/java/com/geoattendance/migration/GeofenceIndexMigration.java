@@ -0,0 +1,64 @@
+package com.geoattendance.migration;
+
+import com.geoattendance.entity.Geofence;
+import com.geoattendance.geo.CompiledGeofence;
+import com.geoattendance.repository.GeofenceRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.geo.GeoJsonPolygon;
+import org.springframework.data.mongodb.core.index.CompoundIndexDefinition;
+import org.springframework.stereotype.Component;
+
+/**
+ * Makes sure the geospatial indexes the repository-backed geofence lookup depends on exist.
+ * Spring Boot does not create annotated indexes automatically, so this runs on every start;
+ * ensureIndex is a no-op when the index is already there. Polygon geofences saved before the
+ * GeoJSON {@code boundary} field existed are backfilled first, since a 2dsphere index build
+ * fails on the first document it cannot parse.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class GeofenceIndexMigration implements ApplicationRunner {
+
+    private final MongoTemplate mongoTemplate;
+    private final GeofenceRepository geofenceRepository;
+
+    @Override
+    public void run(ApplicationArguments args) {
+        try {
+            backfillPolygonBoundaries();
+            mongoTemplate.indexOps(Geofence.class).ensureIndex(
+                new CompoundIndexDefinition(new Document("location", "2dsphere").append("isActive", 1))
+                    .named("location_active"));
+            mongoTemplate.indexOps(Geofence.class).ensureIndex(
+                new CompoundIndexDefinition(new Document("boundary", "2dsphere").append("isActive", 1))
+                    .named("boundary_active"));
+            log.info("Ensured geofence geospatial indexes");
+        } catch (Exception e) {
+            log.warn("Could not ensure geofence geospatial indexes: {}", e.getMessage());
+        }
+    }
+
+    private void backfillPolygonBoundaries() {
+        int updated = 0;
+        for (Geofence geofence : geofenceRepository.findByGeofenceTypeAndBoundaryIsNull(Geofence.GeofenceType.POLYGON)) {
+            GeoJsonPolygon boundary = CompiledGeofence.toGeoJsonPolygon(geofence.getPolygonCoordinates());
+            if (boundary == null) {
+                log.warn("Geofence {} has no valid simple polygon; it is only reachable through the in-memory lookup",
+                    geofence.getId());
+                continue;
+            }
+            geofence.setBoundary(boundary);
+            geofenceRepository.save(geofence);
+            updated++;
+        }
+        if (updated > 0) {
+            log.info("Backfilled GeoJSON boundary for {} polygon geofences", updated);
+        }
+    }
+}
@@ -0,0 +1,41 @@
+package com.geoattendance.migration;
+
+import com.geoattendance.entity.IdempotencyKey;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.index.Index;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+/**
+ * Ensures the TTL index that expires idempotency keys. MongoDB refuses to change the expiry of
+ * an existing index through ensureIndex, so changing the TTL means dropping {@code created_ttl}.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class IdempotencyKeyIndexMigration implements ApplicationRunner {
+
+    private final MongoTemplate mongoTemplate;
+
+    @Value("${attendance.idempotency.ttl-hours:24}")
+    private long ttlHours;
+
+    @Override
+    public void run(ApplicationArguments args) {
+        try {
+            mongoTemplate.indexOps(IdempotencyKey.class).ensureIndex(
+                new Index("createdAt", Sort.Direction.ASC)
+                    .expire(Duration.ofHours(ttlHours))
+                    .named("created_ttl"));
+        } catch (Exception e) {
+            log.warn("Could not ensure idempotency key expiry index: {}", e.getMessage());
+        }
+    }
+}
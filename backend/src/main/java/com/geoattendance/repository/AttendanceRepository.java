@@ -5,12 +5,14 @@ import org.springframework.data.mongodb.repository.MongoRepository;
 import org.springframework.data.mongodb.repository.Query;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
 @Repository
-public interface AttendanceRepository extends MongoRepository<AttendanceRecord, String> {
+public interface AttendanceRepository extends MongoRepository<AttendanceRecord, String>, AttendanceRepositoryCustom {
     
     List<AttendanceRecord> findByUserIdAndCheckInTimeBetween(
         String userId, LocalDateTime startTime, LocalDateTime endTime
@@ -20,6 +22,14 @@ public interface AttendanceRepository extends MongoRepository<AttendanceRecord,
         List<String> userIds, LocalDateTime startTime, LocalDateTime endTime
     );
     
+    Optional<AttendanceRecord> findByUserIdAndWorkDate(String userId, LocalDate workDate);
+    
+    List<AttendanceRecord> findByUserIdInAndWorkDate(Collection<String> userIds, LocalDate workDate);
+    
+    boolean existsByUserIdAndWorkDate(String userId, LocalDate workDate);
+    
+    List<AttendanceRecord> findByWorkDate(LocalDate workDate);
+    
     @Query(value = "{ 'userId': ?0 }", sort = "{ 'checkInTime': -1 }")
     Optional<AttendanceRecord> findFirstByUserIdOrderByCheckInTimeDesc(String userId);
     
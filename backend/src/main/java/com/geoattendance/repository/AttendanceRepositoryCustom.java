@@ -0,0 +1,47 @@
+package com.geoattendance.repository;
+
+import com.geoattendance.entity.AttendanceRecord;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Attendance operations that cannot be expressed as derived repository methods: state
+ * transitions as single conditional updates, and set-based reads and writes for the sweeps.
+ * Each transition only applies while the record is still in the expected state, and returns
+ * the updated record, or null when a concurrent request got there first.
+ */
+public interface AttendanceRepositoryCustom {
+
+    /**
+     * Check out a record that is not yet checked out (and not marked absent) at {@code at},
+     * unless it was checked in after {@code at}
+     */
+    AttendanceRecord checkOutIfOpen(String id, Double latitude, Double longitude, Float accuracy, LocalDateTime at);
+
+    /**
+     * Check a checked-out record back in for a fix taken at {@code at}, unless it was checked
+     * out after {@code at}: a replayed older fix must not undo a later check-out
+     */
+    AttendanceRecord checkInIfCheckedOut(String id, Double latitude, Double longitude, Float accuracy, LocalDateTime at);
+
+    /**
+     * Check out, in one multi-document update, every record of {@code userIds} for
+     * {@code workDate} that is still checked in; returns how many were checked out
+     */
+    long checkOutAllOpen(Collection<String> userIds, LocalDate workDate, LocalDateTime checkOutTime);
+
+    /**
+     * Which of {@code userIds} have a record for {@code workDate}, in one query
+     */
+    Set<String> findUserIdsWithRecordOn(LocalDate workDate, Collection<String> userIds);
+
+    /**
+     * Insert new records as one unordered bulk. Records that collide with an existing record
+     * for the same user and day are skipped; returns the ones actually inserted.
+     */
+    List<AttendanceRecord> insertNewForDay(List<AttendanceRecord> records);
+}
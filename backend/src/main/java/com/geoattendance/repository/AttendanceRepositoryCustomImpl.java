@@ -0,0 +1,116 @@
+package com.geoattendance.repository;
+
+import com.geoattendance.entity.AttendanceRecord;
+import com.mongodb.bulk.BulkWriteError;
+import org.springframework.data.mongodb.BulkOperationException;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+public class AttendanceRepositoryCustomImpl implements AttendanceRepositoryCustom {
+
+    private final MongoTemplate mongoTemplate;
+
+    public AttendanceRepositoryCustomImpl(MongoTemplate mongoTemplate) {
+        this.mongoTemplate = mongoTemplate;
+    }
+
+    @Override
+    public AttendanceRecord checkOutIfOpen(String id, Double latitude, Double longitude, Float accuracy,
+                                           LocalDateTime at) {
+        Criteria expected = Criteria.where("checkOutTime").is(null)
+            .and("status").nin(List.of(AttendanceRecord.AttendanceStatus.CHECKED_OUT, AttendanceRecord.AttendanceStatus.ABSENT))
+            .and("checkInTime").lte(at);
+        return transition(id, expected, new Update()
+            .set("checkOutLatitude", latitude)
+            .set("checkOutLongitude", longitude)
+            .set("checkOutTime", at)
+            .set("locationAccuracyMeters", accuracy)
+            .set("status", AttendanceRecord.AttendanceStatus.CHECKED_OUT));
+    }
+
+    @Override
+    public AttendanceRecord checkInIfCheckedOut(String id, Double latitude, Double longitude, Float accuracy,
+                                                LocalDateTime at) {
+        Criteria expected = Criteria.where("status").is(AttendanceRecord.AttendanceStatus.CHECKED_OUT)
+            .orOperator(Criteria.where("checkOutTime").lte(at), Criteria.where("checkOutTime").is(null));
+        return transition(id, expected, new Update()
+            .unset("checkOutTime")
+            .set("checkInLatitude", latitude)
+            .set("checkInLongitude", longitude)
+            .set("locationAccuracyMeters", accuracy)
+            .set("status", AttendanceRecord.AttendanceStatus.CHECKED_IN));
+    }
+
+    @Override
+    public long checkOutAllOpen(Collection<String> userIds, LocalDate workDate, LocalDateTime checkOutTime) {
+        Query query = new Query(Criteria.where("workDate").is(workDate)
+            .and("userId").in(userIds)
+            .and("status").is(AttendanceRecord.AttendanceStatus.CHECKED_IN)
+            .and("checkOutTime").is(null));
+        Update update = new Update()
+            .set("checkOutTime", checkOutTime)
+            .set("status", AttendanceRecord.AttendanceStatus.CHECKED_OUT)
+            .inc("version", 1)
+            .set("updatedAt", LocalDateTime.now());
+        return mongoTemplate.updateMulti(query, update, AttendanceRecord.class).getModifiedCount();
+    }
+
+    @Override
+    public Set<String> findUserIdsWithRecordOn(LocalDate workDate, Collection<String> userIds) {
+        // Covered by the (userId, workDate) index
+        Query query = new Query(Criteria.where("workDate").is(workDate).and("userId").in(userIds));
+        return new HashSet<>(mongoTemplate.findDistinct(query, "userId", AttendanceRecord.class, String.class));
+    }
+
+    @Override
+    public List<AttendanceRecord> insertNewForDay(List<AttendanceRecord> records) {
+        if (records.isEmpty()) {
+            return records;
+        }
+        BulkOperations ops = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, AttendanceRecord.class);
+        ops.insert(records);
+        try {
+            ops.execute();
+            return records;
+        } catch (BulkOperationException e) {
+            Set<Integer> failed = new HashSet<>();
+            for (BulkWriteError error : e.getErrors()) {
+                // 11000: duplicate key on (userId, workDate), someone checked in meanwhile
+                if (error.getCode() != 11000) {
+                    throw e;
+                }
+                failed.add(error.getIndex());
+            }
+            List<AttendanceRecord> inserted = new ArrayList<>(records.size() - failed.size());
+            for (int i = 0; i < records.size(); i++) {
+                if (!failed.contains(i)) {
+                    inserted.add(records.get(i));
+                }
+            }
+            return inserted;
+        }
+    }
+
+    /**
+     * findAndModify guarded by the expected state; bumps the version so that stale copies
+     * saved elsewhere fail their optimistic lock instead of undoing the transition
+     */
+    private AttendanceRecord transition(String id, Criteria expected, Update update) {
+        Query query = new Query(Criteria.where("_id").is(id)).addCriteria(expected);
+        update.inc("version", 1).set("updatedAt", LocalDateTime.now());
+        return mongoTemplate.findAndModify(query, update, FindAndModifyOptions.options().returnNew(true),
+            AttendanceRecord.class);
+    }
+}
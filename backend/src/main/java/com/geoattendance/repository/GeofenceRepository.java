@@ -5,13 +5,20 @@ import org.springframework.data.mongodb.repository.MongoRepository;
 import org.springframework.stereotype.Repository;
 
 import java.util.List;
+import java.util.Optional;
 
 @Repository
-public interface GeofenceRepository extends MongoRepository<Geofence, String> {
+public interface GeofenceRepository extends MongoRepository<Geofence, String>, GeofenceRepositoryCustom {
     
     List<Geofence> findByIsActiveTrue();
     
     List<Geofence> findByCreatedById(String userId);
 
     List<Geofence> findByCreatedByIdAndIsActiveTrue(String userId);
+
+    List<Geofence> findByGeofenceTypeAndBoundaryIsNull(Geofence.GeofenceType geofenceType);
+
+    Optional<Geofence> findFirstByGeofenceTypeAndIsActiveTrueOrderByRadiusMetersDesc(Geofence.GeofenceType geofenceType);
+
+    Optional<Geofence> findFirstByOrderByUpdatedAtDesc();
 }
@@ -0,0 +1,38 @@
+package com.geoattendance.repository;
+
+import com.geoattendance.entity.Geofence;
+
+import java.util.List;
+
+/**
+ * Geospatial queries that cannot be expressed as derived repository methods.
+ */
+public interface GeofenceRepositoryCustom {
+
+    /**
+     * Active circular geofences whose centre lies within {@code maxDistanceMeters} of the point,
+     * nearest first. Served by the 2dsphere index on {@code location}. Callers that pick one
+     * of several matches must apply their own order.
+     *
+     * @param createdById restrict to one manager's geofences, or null for all
+     */
+    List<Geofence> findActiveCirclesNear(double latitude, double longitude, double maxDistanceMeters, String createdById);
+
+    /**
+     * Active polygon geofences whose {@code boundary} intersects the point.
+     * Served by the 2dsphere index on {@code boundary}. MongoDB treats the edges as
+     * geodesics, so near a long edge the result can differ from the planar ray casting test.
+     *
+     * @param createdById restrict to one manager's geofences, or null for all
+     */
+    List<Geofence> findActivePolygonsIntersecting(double latitude, double longitude, String createdById);
+
+    /**
+     * Active polygon geofences whose {@code boundary} contains the point or passes within
+     * {@code maxDistanceMeters} of it (geodesic distance), nearest first.
+     * Served by the 2dsphere index on {@code boundary}.
+     *
+     * @param createdById restrict to one manager's geofences, or null for all
+     */
+    List<Geofence> findActivePolygonsNear(double latitude, double longitude, double maxDistanceMeters, String createdById);
+}
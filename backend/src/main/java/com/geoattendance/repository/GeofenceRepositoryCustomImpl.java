@@ -0,0 +1,59 @@
+package com.geoattendance.repository;
+
+import com.geoattendance.entity.Geofence;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.geo.GeoJsonPoint;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+
+import java.util.List;
+
+public class GeofenceRepositoryCustomImpl implements GeofenceRepositoryCustom {
+
+    private final MongoTemplate mongoTemplate;
+
+    public GeofenceRepositoryCustomImpl(MongoTemplate mongoTemplate) {
+        this.mongoTemplate = mongoTemplate;
+    }
+
+    @Override
+    public List<Geofence> findActiveCirclesNear(double latitude, double longitude, double maxDistanceMeters,
+                                                String createdById) {
+        // GeoJSON point, so $maxDistance is in meters
+        Query query = new Query(Criteria.where("location")
+                .nearSphere(new GeoJsonPoint(longitude, latitude))
+                .maxDistance(maxDistanceMeters))
+            .addCriteria(Criteria.where("isActive").is(true))
+            .addCriteria(Criteria.where("geofenceType").is(Geofence.GeofenceType.CIRCLE));
+        if (createdById != null) {
+            query.addCriteria(Criteria.where("createdById").is(createdById));
+        }
+        return mongoTemplate.find(query, Geofence.class);
+    }
+
+    @Override
+    public List<Geofence> findActivePolygonsIntersecting(double latitude, double longitude, String createdById) {
+        Query query = new Query(Criteria.where("boundary").intersects(new GeoJsonPoint(longitude, latitude)))
+            .addCriteria(Criteria.where("isActive").is(true))
+            .addCriteria(Criteria.where("geofenceType").is(Geofence.GeofenceType.POLYGON));
+        if (createdById != null) {
+            query.addCriteria(Criteria.where("createdById").is(createdById));
+        }
+        return mongoTemplate.find(query, Geofence.class);
+    }
+
+    @Override
+    public List<Geofence> findActivePolygonsNear(double latitude, double longitude, double maxDistanceMeters,
+                                                 String createdById) {
+        // Distance to the nearest point of the polygon, zero inside it
+        Query query = new Query(Criteria.where("boundary")
+                .nearSphere(new GeoJsonPoint(longitude, latitude))
+                .maxDistance(maxDistanceMeters))
+            .addCriteria(Criteria.where("isActive").is(true))
+            .addCriteria(Criteria.where("geofenceType").is(Geofence.GeofenceType.POLYGON));
+        if (createdById != null) {
+            query.addCriteria(Criteria.where("createdById").is(createdById));
+        }
+        return mongoTemplate.find(query, Geofence.class);
+    }
+}
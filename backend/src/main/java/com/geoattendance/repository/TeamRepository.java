@@ -9,4 +9,6 @@ import java.util.List;
 public interface TeamRepository extends MongoRepository<Team, String> {
     List<Team> findByManagerId(String managerId);
     List<Team> findByEmployeeIdsContains(String employeeId);
+    List<Team> findByWorkStartTimeIsNotNullAndCheckInDeadlineIsNotNull();
+    List<Team> findByWorkEndTimeIsNotNull();
 }
@@ -1,31 +1,89 @@
 package com.geoattendance.scheduler;
 
+import com.geoattendance.entity.Team;
+import com.geoattendance.repository.TeamRepository;
 import com.geoattendance.service.AttendanceService;
-import lombok.RequiredArgsConstructor;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Component;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
+
 @Component
-@RequiredArgsConstructor
 @Slf4j
 public class AttendanceScheduler {
 
     private final AttendanceService attendanceService;
+    private final TeamRepository teamRepository;
+    private final SchedulerCoordinator coordinator;
+    private final TeamJobExecutor teamJobs;
+
+    // A sweep whose team jobs have not all finished makes the next one skip
+    private final AtomicBoolean running = new AtomicBoolean();
+    private final Timer sweepTimer;
+    private final Counter skippedSweeps;
+
+    public AttendanceScheduler(AttendanceService attendanceService, TeamRepository teamRepository,
+                               SchedulerCoordinator coordinator, TeamJobExecutor teamJobs,
+                               MeterRegistry meterRegistry) {
+        this.attendanceService = attendanceService;
+        this.teamRepository = teamRepository;
+        this.coordinator = coordinator;
+        this.teamJobs = teamJobs;
+        this.sweepTimer = Timer.builder("attendance.sweep.duration")
+                .description("Time for one safety-net sweep, including all of its team jobs")
+                .register(meterRegistry);
+        this.skippedSweeps = Counter.builder("attendance.sweep.skipped")
+                .description("Sweeps skipped because the previous one was still running")
+                .register(meterRegistry);
+    }
 
     /**
-     * Run every 5 minutes to check for employees who missed check-in deadline
-     * and mark them as absent
+     * Safety net behind {@link TeamDeadlineScheduler}: sweep all teams for employees who
+     * missed their check-in deadline or are still checked in after work hours. Catches
+     * work-hour changes made on another instance. Absent marking is one set-based job;
+     * auto check-out runs as one job per team on {@link TeamJobExecutor}. The scheduler thread
+     * only submits the jobs; the sweep counts as running until the last one completes.
      */
-    @Scheduled(cron = "0 */5 * * * *") // Every 5 minutes
+    @Scheduled(cron = "${attendance.deadlines.sweep-cron:0 */30 * * * *}")
     public void markAbsentEmployees() {
+        if (!running.compareAndSet(false, true)) {
+            skippedSweeps.increment();
+            log.warn("Skipping scheduled job: the previous marks & auto check-outs are still running");
+            return;
+        }
         log.info("Running scheduled job: marks & auto check-outs");
+        Timer.Sample sample = Timer.start();
+        List<CompletableFuture<Void>> jobs = new ArrayList<>();
         try {
-            attendanceService.markAbsentEmployees();
-            attendanceService.autoCheckOutPastWorkHours();
-            log.info("Completed scheduled job: marks & auto check-outs");
+            // Only the teams this node is responsible for when several instances run
+            SchedulerCoordinator.TeamFilter teams = coordinator.runnableTeams();
+            // One bulk insert for all teams: picked locally, lease confirmed once right before it
+            jobs.add(teamJobs.submit("absence-sweep", "*",
+                    () -> attendanceService.markAbsentEmployees(teams::owns, teams::confirm)));
+            for (Team team : teamRepository.findByWorkEndTimeIsNotNull()) {
+                // Tested inside the job, right before its write
+                jobs.add(teamJobs.submit("auto-checkout", team.getId(), () -> {
+                    if (teams.test(team.getId())) {
+                        attendanceService.autoCheckOutPastWorkHours(team);
+                    }
+                }));
+            }
         } catch (Exception e) {
             log.error("Error in markAbsentEmployees scheduled job: {}", e.getMessage(), e);
         }
+        // Finish on whichever thread completes the last job, without holding a scheduler thread meanwhile
+        int submitted = jobs.size();
+        CompletableFuture.allOf(jobs.toArray(new CompletableFuture[0])).whenComplete((done, failure) -> {
+            sample.stop(sweepTimer);
+            running.set(false);
+            log.info("Completed scheduled job: marks & auto check-outs ({} jobs)", submitted);
+        });
     }
 }
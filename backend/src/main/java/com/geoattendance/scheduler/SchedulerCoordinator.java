@@ -0,0 +1,294 @@
+package com.geoattendance.scheduler;
+
+import com.geoattendance.entity.SchedulerLease;
+import com.geoattendance.entity.SchedulerNode;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.net.InetAddress;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.function.BooleanSupplier;
+import java.util.function.Predicate;
+
+/**
+ * Decides which team work this node runs when several backend instances share one database.
+ * <ul>
+ *   <li>{@code none}: every node runs everything (single instance).</li>
+ *   <li>{@code leader}: one node holds a lease document in {@code scheduler_leases} and runs all
+ *   teams. The lease is renewed on every heartbeat and taken over once it expires; each
+ *   takeover raises its token. {@link TeamFilter#confirm()} re-checks, against the database,
+ *   that the lease still carries the token it had when the run started; per-team jobs test
+ *   each team right before writing for it, and set-based jobs that write once for many teams
+ *   pick their teams with {@link TeamFilter#owns(String)} and confirm once, right before that
+ *   single write. A node that stalls between the confirmation and its write can still write
+ *   once after losing the lease; the conditional attendance updates and the unique work-date
+ *   index make such a late write a no-op rather than a duplicate.</li>
+ *   <li>{@code partitioned}: every node heartbeats into {@code scheduler_nodes} and teams are
+ *   spread over the live nodes by a consistent-hash ring, so adding a node only moves a share
+ *   of the teams.</li>
+ * </ul>
+ * Only plain single-document operations are used, so a standalone local mongod is enough.
+ */
+@Component
+@Slf4j
+public class SchedulerCoordinator {
+
+    public enum Mode {
+        NONE, LEADER, PARTITIONED
+    }
+
+    private static final String LEASE_NAME = "attendance-scheduler";
+
+    private final MongoTemplate mongoTemplate;
+    private final Mode mode;
+    private final String nodeId;
+    private final long leaseMillis;
+    private final int virtualNodes;
+
+    // Leader mode: token of the lease we hold (null if none) and until when it is safe to assume we hold it
+    private volatile Long leaseToken;
+    private volatile long leaseValidUntilNanos;
+
+    // Partitioned mode: ring of live nodes, rebuilt on every heartbeat
+    private volatile NavigableMap<Long, String> ring = new TreeMap<>();
+    private volatile boolean heartbeatDone;
+
+    public SchedulerCoordinator(MongoTemplate mongoTemplate,
+                                @Value("${app.scheduling.cluster.mode:none}") String mode,
+                                @Value("${app.scheduling.cluster.lease-seconds:30}") long leaseSeconds,
+                                @Value("${app.scheduling.cluster.virtual-nodes:64}") int virtualNodes) {
+        this.mongoTemplate = mongoTemplate;
+        this.mode = Mode.valueOf(mode.trim().toUpperCase());
+        this.nodeId = hostName() + "-" + UUID.randomUUID().toString().substring(0, 8);
+        this.leaseMillis = leaseSeconds * 1000;
+        this.virtualNodes = virtualNodes;
+        log.info("Scheduler coordination mode {} as node {}", this.mode, nodeId);
+    }
+
+    public Mode getMode() {
+        return mode;
+    }
+
+    public String getNodeId() {
+        return nodeId;
+    }
+
+    /**
+     * Which teams this node should run work for, fixed when a run starts
+     */
+    public interface TeamFilter extends Predicate<String> {
+
+        /**
+         * Whether the team was assigned to this node when the run started; no database access
+         */
+        boolean owns(String teamId);
+
+        /**
+         * Whether this node may still write for the run. A round trip in leader mode.
+         */
+        boolean confirm();
+
+        /**
+         * {@link #owns(String)} and {@link #confirm()} together, for jobs that write for one team
+         */
+        @Override
+        default boolean test(String teamId) {
+            return owns(teamId) && confirm();
+        }
+    }
+
+    /**
+     * Which teams this node should run work for. Take one per run and test each team right
+     * before its writes: in leader mode every test is a round trip confirming the lease token
+     * the run started with. A job that writes for many teams at once filters with
+     * {@link TeamFilter#owns(String)} and calls {@link TeamFilter#confirm()} once before writing.
+     */
+    public TeamFilter runnableTeams() {
+        if (mode == Mode.NONE) {
+            return filter(teamId -> true, () -> true);
+        }
+        if (!heartbeatDone) {
+            heartbeat();
+        }
+        if (mode == Mode.LEADER) {
+            Long token = holdsLease() ? leaseToken : null;
+            if (token == null) {
+                return filter(teamId -> false, () -> false);
+            }
+            return filter(teamId -> true, () -> confirmLease(token));
+        }
+        NavigableMap<Long, String> current = ring;
+        return filter(teamId -> nodeId.equals(ownerOf(current, teamId)), () -> true);
+    }
+
+    private static TeamFilter filter(Predicate<String> owns, BooleanSupplier confirm) {
+        return new TeamFilter() {
+            @Override
+            public boolean owns(String teamId) {
+                return owns.test(teamId);
+            }
+
+            @Override
+            public boolean confirm() {
+                return confirm.getAsBoolean();
+            }
+        };
+    }
+
+    @Scheduled(fixedDelayString = "${app.scheduling.cluster.heartbeat-ms:10000}", scheduler = "heartbeatScheduler")
+    public synchronized void heartbeat() {
+        if (mode == Mode.NONE) {
+            return;
+        }
+        try {
+            if (mode == Mode.LEADER) {
+                renewOrAcquireLease();
+            } else {
+                refreshRing();
+            }
+            heartbeatDone = true;
+        } catch (RuntimeException e) {
+            log.warn("Scheduler heartbeat failed: {}", e.getMessage());
+        }
+    }
+
+    @PreDestroy
+    public void release() {
+        try {
+            if (mode == Mode.LEADER && leaseToken != null) {
+                // Expire it now so another node can take over without waiting
+                mongoTemplate.updateFirst(
+                    new Query(Criteria.where("_id").is(LEASE_NAME).and("owner").is(nodeId)),
+                    new Update().set("expiresAt", new Date(0)), SchedulerLease.class);
+            } else if (mode == Mode.PARTITIONED) {
+                mongoTemplate.remove(new Query(Criteria.where("_id").is(nodeId)), SchedulerNode.class);
+            }
+        } catch (RuntimeException e) {
+            log.debug("Could not release scheduler role: {}", e.getMessage());
+        }
+    }
+
+    private boolean holdsLease() {
+        return leaseToken != null && System.nanoTime() < leaseValidUntilNanos;
+    }
+
+    private void renewOrAcquireLease() {
+        long started = System.nanoTime();
+        Date now = new Date();
+        Date expiresAt = new Date(now.getTime() + leaseMillis);
+
+        SchedulerLease lease = mongoTemplate.findAndModify(
+            new Query(Criteria.where("_id").is(LEASE_NAME).and("owner").is(nodeId).and("expiresAt").gt(now)),
+            new Update().set("expiresAt", expiresAt),
+            FindAndModifyOptions.options().returnNew(true), SchedulerLease.class);
+        if (lease == null) {
+            // Take over an expired (or missing) lease; an unexpired one makes the upsert collide on _id
+            try {
+                lease = mongoTemplate.findAndModify(
+                    new Query(Criteria.where("_id").is(LEASE_NAME).and("expiresAt").lte(now)),
+                    new Update().set("owner", nodeId).set("expiresAt", expiresAt).inc("token", 1),
+                    FindAndModifyOptions.options().returnNew(true).upsert(true), SchedulerLease.class);
+            } catch (DuplicateKeyException e) {
+                lease = null;
+            }
+            if (lease != null) {
+                log.info("Node {} took the scheduler lease with token {}", nodeId, lease.getToken());
+            }
+        }
+
+        if (lease == null) {
+            if (leaseToken != null) {
+                log.warn("Node {} lost the scheduler lease", nodeId);
+            }
+            leaseToken = null;
+            return;
+        }
+        leaseToken = lease.getToken();
+        // Measured from before the round trip, so local expiry is never later than the database's
+        leaseValidUntilNanos = started + leaseMillis * 1_000_000;
+    }
+
+    /**
+     * Whether the lease is still ours with {@code token}, checked against the database
+     */
+    private boolean confirmLease(long token) {
+        Long current = leaseToken;
+        if (current == null || current != token || !holdsLease()) {
+            return false;
+        }
+        try {
+            return mongoTemplate.exists(new Query(Criteria.where("_id").is(LEASE_NAME)
+                .and("owner").is(nodeId)
+                .and("token").is(token)
+                .and("expiresAt").gt(new Date())), SchedulerLease.class);
+        } catch (RuntimeException e) {
+            log.warn("Could not confirm the scheduler lease: {}", e.getMessage());
+            return false;
+        }
+    }
+
+    private void refreshRing() {
+        Date now = new Date();
+        mongoTemplate.upsert(new Query(Criteria.where("_id").is(nodeId)),
+            new Update().set("expiresAt", new Date(now.getTime() + leaseMillis)), SchedulerNode.class);
+        mongoTemplate.remove(new Query(Criteria.where("expiresAt").lte(now)), SchedulerNode.class);
+
+        List<SchedulerNode> live = mongoTemplate.findAll(SchedulerNode.class);
+        NavigableMap<Long, String> next = new TreeMap<>();
+        for (SchedulerNode node : live) {
+            for (int i = 0; i < virtualNodes; i++) {
+                next.put(hash(node.getNodeId() + "#" + i), node.getNodeId());
+            }
+        }
+        if (next.size() != ring.size()) {
+            log.info("Scheduler ring now has {} live nodes", live.size());
+        }
+        ring = next;
+    }
+
+    private static String ownerOf(NavigableMap<Long, String> ring, String key) {
+        if (ring.isEmpty()) {
+            return null;
+        }
+        Map.Entry<Long, String> entry = ring.ceilingEntry(hash(key));
+        return (entry != null ? entry : ring.firstEntry()).getValue();
+    }
+
+    private static long hash(String key) {
+        try {
+            byte[] digest = MessageDigest.getInstance("MD5").digest(key.getBytes(StandardCharsets.UTF_8));
+            long hash = 0;
+            for (int i = 0; i < 8; i++) {
+                hash = (hash << 8) | (digest[i] & 0xff);
+            }
+            return hash;
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static String hostName() {
+        try {
+            return InetAddress.getLocalHost().getHostName();
+        } catch (Exception e) {
+            return "node";
+        }
+    }
+}
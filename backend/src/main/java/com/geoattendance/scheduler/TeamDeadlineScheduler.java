@@ -0,0 +1,128 @@
+package com.geoattendance.scheduler;
+
+import com.geoattendance.entity.Team;
+import com.geoattendance.repository.TeamRepository;
+import com.geoattendance.service.AttendanceService;
+import com.geoattendance.service.TeamWorkHoursChangedEvent;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledFuture;
+import java.util.function.Consumer;
+
+/**
+ * Fires each team's work-hour events when they happen instead of polling: one timer per team
+ * for its check-in deadline (absent marking) and one for its work end time (auto check-out),
+ * each running only for that team. The scheduler's delay queue orders the timers. Today's
+ * timers are planned at startup and just after midnight, and a team's are re-planned alone
+ * when its work hours change. Deadlines already past when planned fire straight away, so a
+ * restart catches up. A timer fires one second after its deadline, because the sweeps only act
+ * strictly after it. With several instances, only the node {@link SchedulerCoordinator} assigns
+ * the team to acts when a timer fires.
+ */
+@Component
+@Slf4j
+public class TeamDeadlineScheduler {
+
+    private static final long GRACE_SECONDS = 1;
+
+    private final TeamRepository teamRepository;
+    private final AttendanceService attendanceService;
+    private final TaskScheduler taskScheduler;
+    private final SchedulerCoordinator coordinator;
+    private final TeamJobExecutor teamJobs;
+
+    // Pending timers per team id
+    private final Map<String, List<ScheduledFuture<?>>> planned = new ConcurrentHashMap<>();
+
+    public TeamDeadlineScheduler(TeamRepository teamRepository, AttendanceService attendanceService,
+                                 @Qualifier("taskScheduler") TaskScheduler taskScheduler,
+                                 SchedulerCoordinator coordinator,
+                                 TeamJobExecutor teamJobs) {
+        this.teamRepository = teamRepository;
+        this.attendanceService = attendanceService;
+        this.taskScheduler = taskScheduler;
+        this.coordinator = coordinator;
+        this.teamJobs = teamJobs;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void planOnStartup() {
+        planToday();
+    }
+
+    @Scheduled(cron = "${attendance.deadlines.plan-cron:5 0 0 * * *}")
+    public synchronized void planToday() {
+        planned.keySet().forEach(this::cancel);
+        int timers = 0;
+        for (Team team : teamRepository.findAll()) {
+            timers += plan(team);
+        }
+        log.info("Planned {} work-hour timers for today", timers);
+    }
+
+    @EventListener
+    public synchronized void onWorkHoursChanged(TeamWorkHoursChangedEvent event) {
+        teamRepository.findById(event.getTeamId()).ifPresentOrElse(this::plan, () -> cancel(event.getTeamId()));
+        log.debug("Re-planned work-hour timers of team {}", event.getTeamId());
+    }
+
+    private int plan(Team team) {
+        cancel(team.getId());
+        LocalDate today = LocalDate.now();
+        List<ScheduledFuture<?>> futures = new ArrayList<>(2);
+        if (team.getWorkStartTime() != null && team.getCheckInDeadline() != null) {
+            futures.add(schedule(team.getId(), today, team.getCheckInDeadline(), "check-in-deadline",
+                attendanceService::markAbsentEmployees));
+        }
+        if (team.getWorkEndTime() != null) {
+            futures.add(schedule(team.getId(), today, team.getWorkEndTime(), "work-end",
+                attendanceService::autoCheckOutPastWorkHours));
+        }
+        if (!futures.isEmpty()) {
+            planned.put(team.getId(), futures);
+        }
+        return futures.size();
+    }
+
+    private ScheduledFuture<?> schedule(String teamId, LocalDate day, LocalTime time, String event,
+                                       Consumer<Team> action) {
+        Instant at = day.atTime(time).atZone(ZoneId.systemDefault()).toInstant().plusSeconds(GRACE_SECONDS);
+        // The timer only hands the work to the team job executor, keeping scheduler threads free
+        return taskScheduler.schedule(() -> teamJobs.submit(event, teamId, () -> fire(teamId, event, action)), at);
+    }
+
+    private void fire(String teamId, String event, Consumer<Team> action) {
+        // Reload, so the timer works on the team's current employees
+        Team team = teamRepository.findById(teamId).orElse(null);
+        if (team == null) {
+            return;
+        }
+        // Every node plans every team; the one responsible at fire time does the work, checked last before writing
+        if (!coordinator.runnableTeams().test(teamId)) {
+            return;
+        }
+        action.accept(team);
+        log.debug("Handled {} of team {}", event, teamId);
+    }
+
+    private void cancel(String teamId) {
+        List<ScheduledFuture<?>> futures = planned.remove(teamId);
+        if (futures != null) {
+            futures.forEach(future -> future.cancel(false));
+        }
+    }
+}
@@ -0,0 +1,131 @@
+package com.geoattendance.scheduler;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.jvm.ExecutorServiceMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs per-team scheduler work off the scheduler threads, so one slow team (or a blocking
+ * notification send) only holds up its own job. Concurrency is bounded either way: a fixed
+ * pool with a bounded queue, or, with {@code virtual-threads}, a virtual thread per job that
+ * waits for one of {@code pool-size} run permits, at most {@code queue-capacity} waiting.
+ * Submitting never blocks and never runs the job on the submitting (scheduler) thread: when
+ * full, the job is skipped and counted as {@code attendance.team_job.rejected}; the periodic
+ * sweep picks up whatever a skipped job would have done.
+ * Every job is timed as {@code attendance.team_job} tagged by job and outcome; the executor
+ * itself is reported under {@code attendance.team_jobs}.
+ */
+@Component
+@Slf4j
+public class TeamJobExecutor implements DisposableBean {
+
+    private final ExecutorService executor;
+    // Virtual threads only: jobs admitted (running or waiting), and jobs running
+    private final Semaphore admitted;
+    private final Semaphore permits;
+    private final MeterRegistry meterRegistry;
+
+    public TeamJobExecutor(MeterRegistry meterRegistry,
+                           @Value("${app.scheduling.team-jobs.pool-size:8}") int poolSize,
+                           @Value("${app.scheduling.team-jobs.queue-capacity:1000}") int queueCapacity,
+                           @Value("${app.scheduling.team-jobs.virtual-threads:false}") boolean virtualThreads) {
+        this.meterRegistry = meterRegistry;
+        ExecutorService delegate;
+        if (virtualThreads) {
+            delegate = Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("team-job-", 0).factory());
+            admitted = new Semaphore(poolSize + queueCapacity);
+            permits = new Semaphore(poolSize);
+        } else {
+            AtomicInteger threads = new AtomicInteger();
+            ThreadPoolExecutor pool = new ThreadPoolExecutor(poolSize, poolSize, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "team-job-" + threads.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+            pool.allowCoreThreadTimeOut(true);
+            delegate = pool;
+            admitted = null;
+            permits = null;
+        }
+        this.executor = ExecutorServiceMetrics.monitor(meterRegistry, delegate, "attendance.team_jobs");
+        log.info("Team jobs run on {} (at most {} at a time)", virtualThreads ? "virtual threads" : "a thread pool",
+            poolSize);
+    }
+
+    /**
+     * Run {@code job} for one team. Never blocks the caller. The future completes when the job
+     * has finished, or right away when it was skipped because the executor is full or shut
+     * down; failures are logged and counted here, so it never completes exceptionally.
+     */
+    public CompletableFuture<Void> submit(String job, String teamId, Runnable action) {
+        if (admitted != null && !admitted.tryAcquire()) {
+            return rejected(job, teamId);
+        }
+        try {
+            return CompletableFuture.runAsync(() -> run(job, teamId, action), executor);
+        } catch (RejectedExecutionException e) {
+            if (admitted != null) {
+                admitted.release();
+            }
+            return rejected(job, teamId);
+        }
+    }
+
+    private CompletableFuture<Void> rejected(String job, String teamId) {
+        meterRegistry.counter("attendance.team_job.rejected", "job", job).increment();
+        log.warn("Skipped team job {} for team {}: team jobs are full or shut down", job, teamId);
+        return CompletableFuture.completedFuture(null);
+    }
+
+    private void run(String job, String teamId, Runnable action) {
+        if (permits != null) {
+            // A waiting virtual thread holds no carrier thread
+            permits.acquireUninterruptibly();
+        }
+        long started = System.nanoTime();
+        String outcome = "success";
+        try {
+            action.run();
+        } catch (Exception e) {
+            outcome = "failure";
+            log.error("Team job {} failed for team {}: {}", job, teamId, e.getMessage(), e);
+        } finally {
+            if (permits != null) {
+                permits.release();
+                admitted.release();
+            }
+            Timer.builder("attendance.team_job")
+                .description("Duration of scheduler work for one team")
+                .tag("job", job)
+                .tag("outcome", outcome)
+                .register(meterRegistry)
+                .record(System.nanoTime() - started, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    @Override
+    public void destroy() throws InterruptedException {
+        executor.shutdown();
+        if (!executor.awaitTermination(30, TimeUnit.SECONDS)) {
+            log.warn("Team jobs still running at shutdown were interrupted");
+            executor.shutdownNow();
+        }
+    }
+}
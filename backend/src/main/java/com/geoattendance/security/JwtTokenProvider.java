@@ -99,6 +99,16 @@ public class JwtTokenProvider {
         return claims.getSubject();
     }
 
+    public Date getExpirationFromToken(String token) {
+        Claims claims = Jwts.parser()
+                .setSigningKey(getSigningKey())
+                .build()
+                .parseClaimsJws(token)
+                .getBody();
+
+        return claims.getExpiration();
+    }
+
     public boolean validateToken(String authToken) {
 
         try {
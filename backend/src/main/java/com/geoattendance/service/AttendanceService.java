@@ -1,21 +1,41 @@
 package com.geoattendance.service;
 
+import com.geoattendance.dto.LocationFrames;
 import com.geoattendance.entity.AttendanceRecord;
 import com.geoattendance.entity.Team;
 import com.geoattendance.entity.User;
 import com.geoattendance.repository.AttendanceRepository;
 import com.geoattendance.repository.TeamRepository;
 import com.geoattendance.repository.UserRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.time.Instant;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.LocalTime;
+import java.time.ZoneId;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BooleanSupplier;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 
 @Service
@@ -28,31 +48,133 @@ public class AttendanceService {
     private final TeamRepository teamRepository;
     private final GeofencingService geofencingService;
     private final NotificationService notificationService;
+    private final GeofenceTransitionEngine transitionEngine;
+    private final AttendanceStateCache stateCache;
+    private final LastLocationStore lastLocationStore;
+
+    // Last fully evaluated location update per user, reused for fixes that barely moved
+    private final Map<String, EvaluatedFix> lastEvaluated = new ConcurrentHashMap<>();
+    private final Counter coalescedUpdates;
+    private final Counter evaluatedUpdates;
+
+    // Striped per-user locks: every change to one user's attendance runs in order, users on different stripes in parallel
+    private final ReentrantLock[] userLocks;
+    private final Counter contendedLocks;
+
+    private final Timer absenceSweepTimer;
+    private final Counter absenceSweepChecked;
+    private final Counter absenceSweepMarked;
+    private final Counter autoCheckedOut;
+
+    @Value("${attendance.location-coalescing.enabled:true}")
+    private boolean coalescingEnabled;
+
+    @Value("${attendance.location-coalescing.distance-meters:5}")
+    private double coalescingDistanceMeters;
+
+    @Value("${attendance.location-coalescing.window-seconds:30}")
+    private long coalescingWindowSeconds;
 
     // Explicit constructor replaces Lombok @RequiredArgsConstructor
     public AttendanceService(AttendanceRepository attendanceRepository,
             UserRepository userRepository,
             TeamRepository teamRepository,
             GeofencingService geofencingService,
-            NotificationService notificationService) {
+            NotificationService notificationService,
+            GeofenceTransitionEngine transitionEngine,
+            AttendanceStateCache stateCache,
+            LastLocationStore lastLocationStore,
+            MeterRegistry meterRegistry,
+            @Value("${attendance.lock-stripes:1024}") int lockStripes) {
         this.attendanceRepository = attendanceRepository;
         this.userRepository = userRepository;
         this.teamRepository = teamRepository;
         this.geofencingService = geofencingService;
         this.notificationService = notificationService;
+        this.transitionEngine = transitionEngine;
+        this.stateCache = stateCache;
+        this.lastLocationStore = lastLocationStore;
+        this.coalescedUpdates = Counter.builder("attendance.location.updates")
+                .tag("outcome", "coalesced")
+                .description("Location updates answered from the previous evaluation")
+                .register(meterRegistry);
+        this.evaluatedUpdates = Counter.builder("attendance.location.updates")
+                .tag("outcome", "evaluated")
+                .description("Location updates evaluated against the geofences")
+                .register(meterRegistry);
+        int stripes = 1;
+        while (stripes < lockStripes) {
+            stripes <<= 1;
+        }
+        this.userLocks = new ReentrantLock[stripes];
+        for (int i = 0; i < stripes; i++) {
+            this.userLocks[i] = new ReentrantLock();
+        }
+        this.contendedLocks = Counter.builder("attendance.user_lock.contended")
+                .description("Attendance changes that had to wait for another change on the same lock stripe")
+                .register(meterRegistry);
+        this.absenceSweepTimer = Timer.builder("attendance.absence_sweep.duration")
+                .description("Time to mark employees who missed their check-in deadline as absent")
+                .register(meterRegistry);
+        this.absenceSweepChecked = Counter.builder("attendance.absence_sweep.checked")
+                .description("Employees past their check-in deadline examined by the sweep")
+                .register(meterRegistry);
+        this.absenceSweepMarked = Counter.builder("attendance.absence_sweep.marked")
+                .description("Employees marked absent by the sweep")
+                .register(meterRegistry);
+        this.autoCheckedOut = Counter.builder("attendance.auto_checkout.checked_out")
+                .description("Open check-ins closed at the end of the team's work hours")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Run {@code action} holding the lock stripe of {@code userId}. Reentrant, so public
+     * entry points can call each other.
+     */
+    private <T> T withUserLock(String userId, Supplier<T> action) {
+        int hash = userId != null ? userId.hashCode() : 0;
+        ReentrantLock lock = userLocks[(hash ^ (hash >>> 16)) & (userLocks.length - 1)];
+        if (!lock.tryLock()) {
+            contendedLocks.increment();
+            lock.lock();
+        }
+        try {
+            return action.get();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void withUserLock(String userId, Runnable action) {
+        withUserLock(userId, () -> {
+            action.run();
+            return null;
+        });
     }
 
     /**
      * Get today's attendance record for a user
      */
     public AttendanceRecord getTodayAttendance(User user) {
-        LocalDateTime startOfDay = LocalDateTime.of(LocalDate.now(), LocalTime.MIN);
-        LocalDateTime endOfDay = LocalDateTime.of(LocalDate.now(), LocalTime.MAX);
-
-        return attendanceRepository.findByUserIdAndCheckInTimeBetween(user.getId(), startOfDay, endOfDay)
-                .stream()
-                .findFirst()
+        long readStarted = AttendanceStateCache.stamp();
+        AttendanceRecord record = attendanceRepository.findByUserIdAndWorkDate(user.getId(), LocalDate.now())
                 .orElse(null);
+        stateCache.load(user.getId(), record, readStarted);
+        return record;
+    }
+
+    /**
+     * Today's attendance state for a user, from the write-through cache when possible
+     */
+    public AttendanceStateCache.TodayState getTodayState(User user) {
+        AttendanceStateCache.TodayState state = stateCache.get(user.getId());
+        if (state == null) {
+            long readStarted = AttendanceStateCache.stamp();
+            AttendanceRecord record = attendanceRepository.findByUserIdAndWorkDate(user.getId(), LocalDate.now())
+                    .orElse(null);
+            state = stateCache.load(user.getId(), record, readStarted);
+        }
+        return state;
     }
 
     /**
@@ -121,15 +243,12 @@ public class AttendanceService {
         // Get all team members
         List<User> teamMembers = allEmployeeIds.isEmpty() ? List.of() : userRepository.findAllById(allEmployeeIds);
 
-        LocalDateTime startOfDay = LocalDateTime.of(LocalDate.now(), LocalTime.MIN);
-        LocalDateTime endOfDay = LocalDateTime.of(LocalDate.now(), LocalTime.MAX);
+        Map<String, AttendanceRecord> todayRecords = teamMembers.isEmpty() ? Map.of()
+                : attendanceRepository.findByUserIdInAndWorkDate(allEmployeeIds, LocalDate.now()).stream()
+                        .collect(Collectors.toMap(AttendanceRecord::getUserId, r -> r));
 
         return teamMembers.stream().map(member -> {
-            AttendanceRecord todayRecord = attendanceRepository
-                    .findByUserIdAndCheckInTimeBetween(member.getId(), startOfDay, endOfDay)
-                    .stream()
-                    .findFirst()
-                    .orElse(null);
+            AttendanceRecord todayRecord = todayRecords.get(member.getId());
 
             String status;
             String checkInTime = null;
@@ -223,6 +342,19 @@ public class AttendanceService {
      */
     @Transactional
     public AttendanceRecord manualCheckIn(User user, Double latitude, Double longitude, Float accuracy) {
+        return manualCheckIn(user, latitude, longitude, accuracy, LocalDateTime.now());
+    }
+
+    /**
+     * Manual check-in that happened at {@code at} earlier today, e.g. queued while offline
+     */
+    @Transactional
+    public AttendanceRecord manualCheckIn(User user, Double latitude, Double longitude, Float accuracy,
+            LocalDateTime at) {
+        return withUserLock(user.getId(), () -> checkIn(user, latitude, longitude, accuracy, at));
+    }
+
+    private AttendanceRecord checkIn(User user, Double latitude, Double longitude, Float accuracy, LocalDateTime at) {
         // Check if user already has a record today
         AttendanceRecord todayRecord = getTodayAttendance(user);
 
@@ -261,7 +393,7 @@ public class AttendanceService {
         boolean isFirstCheckIn = (todayRecord == null);
 
         if (isFirstCheckIn && userTeam != null && userTeam.getWorkStartTime() != null) {
-            LocalTime now = LocalTime.now();
+            LocalTime now = at.toLocalTime();
             LocalTime earliestCheckIn = userTeam.getWorkStartTime()
                     .minusMinutes(userTeam.getCheckInBufferMinutes() != null ? userTeam.getCheckInBufferMinutes() : 15);
             LocalTime latestCheckIn = userTeam.getCheckInDeadline() != null ? userTeam.getCheckInDeadline()
@@ -280,10 +412,15 @@ public class AttendanceService {
                 AttendanceRecord absentRecord = AttendanceRecord.builder()
                         .userId(user.getId())
                         .geofenceId(geofence.getId())
-                        .checkInTime(LocalDateTime.now())
+                        .checkInTime(at)
+                        .workDate(at.toLocalDate())
                         .status(AttendanceRecord.AttendanceStatus.ABSENT)
                         .build();
-                attendanceRepository.save(absentRecord);
+                try {
+                    attendanceRepository.save(absentRecord);
+                } catch (DuplicateKeyException e) {
+                    // A concurrent request already created today's record
+                }
                 throw new RuntimeException(
                         "Check-in deadline passed (" + latestCheckIn + "). You have been marked absent.");
             }
@@ -291,24 +428,30 @@ public class AttendanceService {
 
         AttendanceRecord record;
         if (todayRecord != null && todayRecord.getStatus() == AttendanceRecord.AttendanceStatus.CHECKED_OUT) {
-            // Re-checking in after checkout - update existing record
-            todayRecord.setCheckOutTime(null);
-            todayRecord.setStatus(AttendanceRecord.AttendanceStatus.CHECKED_IN);
-            todayRecord.setCheckInLatitude(latitude);
-            todayRecord.setCheckInLongitude(longitude);
-            todayRecord.setLocationAccuracyMeters(accuracy);
-            record = attendanceRepository.save(todayRecord);
+            // Re-checking in after checkout - update existing record, unless a concurrent request already did
+            long started = AttendanceStateCache.stamp();
+            record = attendanceRepository.checkInIfCheckedOut(todayRecord.getId(), latitude, longitude, accuracy, at);
+            if (record == null) {
+                throw new RuntimeException("You are already checked in for today");
+            }
+            stateCache.load(user.getId(), record, started);
         } else {
             record = AttendanceRecord.builder()
                     .userId(user.getId())
                     .geofenceId(geofence.getId())
-                    .checkInTime(LocalDateTime.now())
+                    .checkInTime(at)
+                    .workDate(at.toLocalDate())
                     .checkInLatitude(latitude)
                     .checkInLongitude(longitude)
                     .locationAccuracyMeters(accuracy)
                     .status(AttendanceRecord.AttendanceStatus.CHECKED_IN)
                     .build();
-            record = attendanceRepository.save(record);
+            try {
+                record = attendanceRepository.save(record);
+            } catch (DuplicateKeyException e) {
+                log.warn("User {} checked in concurrently, keeping the existing record", user.getId());
+                throw new RuntimeException("You are already checked in for today");
+            }
         }
 
         log.info("Manual check-in for user {} at geofence {}", user.getId(), geofence.getName());
@@ -321,6 +464,19 @@ public class AttendanceService {
      */
     @Transactional
     public AttendanceRecord manualCheckOut(User user, Double latitude, Double longitude, Float accuracy) {
+        return manualCheckOut(user, latitude, longitude, accuracy, LocalDateTime.now());
+    }
+
+    /**
+     * Manual check-out that happened at {@code at} earlier today, e.g. queued while offline
+     */
+    @Transactional
+    public AttendanceRecord manualCheckOut(User user, Double latitude, Double longitude, Float accuracy,
+            LocalDateTime at) {
+        return withUserLock(user.getId(), () -> checkOut(user, latitude, longitude, accuracy, at));
+    }
+
+    private AttendanceRecord checkOut(User user, Double latitude, Double longitude, Float accuracy, LocalDateTime at) {
         AttendanceRecord record = getTodayAttendance(user);
 
         if (record == null || record.getCheckOutTime() != null) {
@@ -333,7 +489,7 @@ public class AttendanceService {
                 .stream().findFirst().orElse(null);
 
         if (userTeam != null && userTeam.getCheckOutAllowedFrom() != null) {
-            LocalTime now = LocalTime.now();
+            LocalTime now = at.toLocalTime();
             LocalTime earliestCheckOut = userTeam.getCheckOutAllowedFrom()
                     .minusMinutes(
                             userTeam.getCheckOutBufferMinutes() != null ? userTeam.getCheckOutBufferMinutes() : 0);
@@ -345,14 +501,15 @@ public class AttendanceService {
             }
         }
 
-        record.setCheckOutLatitude(latitude);
-        record.setCheckOutLongitude(longitude);
-        record.setCheckOutTime(LocalDateTime.now());
-        record.setLocationAccuracyMeters(accuracy);
-        record.setStatus(AttendanceRecord.AttendanceStatus.CHECKED_OUT);
+        long started = AttendanceStateCache.stamp();
+        AttendanceRecord saved = attendanceRepository.checkOutIfOpen(record.getId(), latitude, longitude, accuracy, at);
+        if (saved == null) {
+            log.warn("Check-in of user {} was closed concurrently", user.getId());
+            throw new RuntimeException("No active check-in found");
+        }
+        stateCache.load(user.getId(), saved, started);
 
         log.info("Manual check-out for user {}", user.getId());
-        AttendanceRecord saved = attendanceRepository.save(record);
         notificationService.sendCheckOutNotification(user);
         return saved;
     }
@@ -363,20 +520,153 @@ public class AttendanceService {
      */
     @Transactional
     public LocationUpdateResult processLocationUpdate(User user, Double latitude, Double longitude, Float accuracy) {
-        AttendanceRecord todayRecord = getTodayAttendance(user);
+        return processLocationUpdate(user, latitude, longitude, accuracy, Instant.now());
+    }
+
+    /**
+     * Same as {@link #processLocationUpdate(User, Double, Double, Float)} for a fix taken at
+     * {@code observedAt} (clamped to now), e.g. one of several buffered fixes sent together
+     */
+    @Transactional
+    public LocationUpdateResult processLocationUpdate(User user, double latitude, double longitude, Float accuracy,
+            Instant observedAt) {
+        return withUserLock(user.getId(), () -> updateLocation(user, latitude, longitude, accuracy, observedAt));
+    }
+
+    private LocationUpdateResult updateLocation(User user, double latitude, double longitude, Float accuracy,
+            Instant observedAt) {
+        Instant now = Instant.now();
+        if (observedAt == null || observedAt.isAfter(now)) {
+            observedAt = now;
+        }
+        lastLocationStore.record(user.getId(), latitude, longitude, accuracy, observedAt);
+
+        LocationUpdateResult coalesced = coalescedResult(user.getId(), latitude, longitude, accuracy);
+        if (coalesced != null) {
+            coalescedUpdates.increment();
+            return coalesced;
+        }
+        evaluatedUpdates.increment();
+
+        LocationUpdateResult result = applyLocationUpdate(user, latitude, longitude, accuracy, observedAt);
+
+        // Let the client back off while it is far from any boundary
+        double distance = geofencingService.distanceToNearestBoundaryMeters(latitude, longitude);
+        result.distanceToBoundaryMeters = distance;
+        result.nextPingSeconds = geofencingService.suggestNextPingSeconds(distance, accuracy);
+
+        rememberEvaluation(user.getId(), latitude, longitude, accuracy, result);
+        return result;
+    }
+
+    /**
+     * Process a batch of binary location frames oldest first and return the result for the
+     * newest. Frames without a timestamp count as taken now.
+     */
+    @Transactional
+    public LocationUpdateResult processLocationFrames(User user, LocationFrames frames) {
+        long now = System.currentTimeMillis();
+        Integer[] order = new Integer[frames.size()];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, Comparator.comparingLong(i -> frames.timestamp(i) > 0 ? frames.timestamp(i) : now));
+
+        // One lock for the whole batch, so another request cannot interleave with it
+        return withUserLock(user.getId(), () -> {
+            LocationUpdateResult result = null;
+            for (int i : order) {
+                Instant observedAt = frames.timestamp(i) > 0 ? Instant.ofEpochMilli(frames.timestamp(i)) : null;
+                result = updateLocation(user, frames.latitude(i), frames.longitude(i), frames.accuracy(i), observedAt);
+            }
+            return result;
+        });
+    }
+
+    /**
+     * Previous result for a fix that cannot change anything: close to the last evaluated
+     * one, recent, of similar accuracy, with no state change pending and neither the
+     * attendance state nor the geofences changed since
+     */
+    private LocationUpdateResult coalescedResult(String userId, double latitude, double longitude, Float accuracy) {
+        if (!coalescingEnabled) {
+            return null;
+        }
+        EvaluatedFix last = lastEvaluated.get(userId);
+        if (last == null || System.nanoTime() - last.evaluatedAtNanos > coalescingWindowSeconds * 1_000_000_000L) {
+            return null;
+        }
+        if (Math.abs(accuracyOf(accuracy) - last.accuracy) > coalescingDistanceMeters
+                || transitionEngine.hasPending(userId)) {
+            return null;
+        }
+        AttendanceStateCache.TodayState state = stateCache.get(userId);
+        if (state == null || !Objects.equals(state.getRecordId(), last.recordId) || state.getStatus() != last.status
+                || geofencingService.getGeofenceVersion() != last.geofenceVersion) {
+            return null;
+        }
+        if (geofencingService.calculateDistance(latitude, longitude, last.latitude, last.longitude) > coalescingDistanceMeters) {
+            return null;
+        }
+        return last.result;
+    }
+
+    private void rememberEvaluation(String userId, double latitude, double longitude, Float accuracy,
+            LocationUpdateResult result) {
+        AttendanceStateCache.TodayState state = stateCache.get(userId);
+        if (!coalescingEnabled || result.isTransition() || state == null) {
+            lastEvaluated.remove(userId);
+            return;
+        }
+        lastEvaluated.put(userId, new EvaluatedFix(latitude, longitude, accuracyOf(accuracy), System.nanoTime(),
+                state.getRecordId(), state.getStatus(), geofencingService.getGeofenceVersion(), result));
+    }
+
+    private static double accuracyOf(Float accuracy) {
+        return accuracy != null ? accuracy : 0;
+    }
+
+    private static final class EvaluatedFix {
+        private final double latitude;
+        private final double longitude;
+        private final double accuracy;
+        private final long evaluatedAtNanos;
+        private final String recordId;
+        private final AttendanceRecord.AttendanceStatus status;
+        private final long geofenceVersion;
+        private final LocationUpdateResult result;
+
+        private EvaluatedFix(double latitude, double longitude, double accuracy, long evaluatedAtNanos,
+                String recordId, AttendanceRecord.AttendanceStatus status, long geofenceVersion,
+                LocationUpdateResult result) {
+            this.latitude = latitude;
+            this.longitude = longitude;
+            this.accuracy = accuracy;
+            this.evaluatedAtNanos = evaluatedAtNanos;
+            this.recordId = recordId;
+            this.status = status;
+            this.geofenceVersion = geofenceVersion;
+            this.result = result;
+        }
+    }
+
+    private LocationUpdateResult applyLocationUpdate(User user, double latitude, double longitude, Float accuracy,
+            Instant observedAt) {
+        AttendanceStateCache.TodayState state = getTodayState(user);
 
         // If user is marked absent, ignore location updates
-        if (todayRecord != null && todayRecord.getStatus() == AttendanceRecord.AttendanceStatus.ABSENT) {
+        if (state.getStatus() == AttendanceRecord.AttendanceStatus.ABSENT) {
             return new LocationUpdateResult("ABSENT", "You are marked absent for today", null);
         }
 
         // Check if user has completed first check-in
-        boolean hasFirstCheckIn = todayRecord != null && todayRecord.getCheckInTime() != null;
+        boolean hasFirstCheckIn = state.hasRecord() && state.getCheckInTime() != null;
 
         // If no first check-in yet, location tracking doesn't auto-check-in
         // User must manually check-in first within deadline
         if (!hasFirstCheckIn) {
             var geofence = geofencingService.findGeofenceContainingPoint(latitude, longitude);
+            stateCache.recordPosition(user.getId(), latitude, longitude, geofence != null ? geofence.getId() : null);
             if (geofence != null) {
                 return new LocationUpdateResult("AWAITING_FIRST_CHECKIN",
                         "You are in the geofence area. Please check in manually.", geofence.getName());
@@ -384,79 +674,146 @@ public class AttendanceService {
             return new LocationUpdateResult("OUTSIDE", "You are outside the work area", null);
         }
 
-        // After first check-in, auto check-in/check-out based on location
-        var geofence = geofencingService.findGeofenceContainingPoint(latitude, longitude);
-
-        if (geofence != null && geofence.getIsActive()) {
-            // User is inside geofence
-            if (todayRecord.getStatus() == AttendanceRecord.AttendanceStatus.CHECKED_OUT) {
-                // Auto check back in
-                todayRecord.setCheckOutTime(null);
-                todayRecord.setStatus(AttendanceRecord.AttendanceStatus.CHECKED_IN);
-                todayRecord.setCheckInLatitude(latitude);
-                todayRecord.setCheckInLongitude(longitude);
-                todayRecord.setLocationAccuracyMeters(accuracy);
-                attendanceRepository.save(todayRecord);
-                notificationService.sendCheckInNotification(user, geofence.getName());
-                log.info("Auto check-in for user {} at geofence {}", user.getId(), geofence.getName());
-                return new LocationUpdateResult("AUTO_CHECKED_IN",
-                        "You are back in the work area. Checked in automatically.", geofence.getName());
-            }
-            return new LocationUpdateResult("CHECKED_IN", "You are in the work area", geofence.getName());
-        } else {
-            // User is outside geofence
-            if (todayRecord.getStatus() == AttendanceRecord.AttendanceStatus.CHECKED_IN) {
-                // Auto check out
-                todayRecord.setCheckOutLatitude(latitude);
-                todayRecord.setCheckOutLongitude(longitude);
-                todayRecord.setCheckOutTime(LocalDateTime.now());
-                todayRecord.setLocationAccuracyMeters(accuracy);
-                todayRecord.setStatus(AttendanceRecord.AttendanceStatus.CHECKED_OUT);
-                attendanceRepository.save(todayRecord);
-                notificationService.sendCheckOutNotification(user);
-                log.info("Auto check-out for user {} - left geofence area", user.getId());
-                return new LocationUpdateResult("AUTO_CHECKED_OUT",
-                        "You left the work area. Checked out automatically.", null);
+        // After first check-in, auto check-in/check-out based on location, debounced by the transition engine.
+        // Transitions are stamped with the fix's time, which for buffered or replayed fixes is well before now
+        LocalDateTime fixTime = LocalDateTime.ofInstant(observedAt, ZoneId.systemDefault());
+        boolean checkedIn = state.getStatus() != AttendanceRecord.AttendanceStatus.CHECKED_OUT;
+        GeofenceTransitionEngine.Decision decision = transitionEngine.evaluate(
+                user.getId(), checkedIn, latitude, longitude, accuracy, observedAt);
+        var geofence = decision.getGeofence();
+        stateCache.recordPosition(user.getId(), latitude, longitude, geofence != null ? geofence.getId() : null);
+
+        if (decision.isTransition() && decision.getReading() == GeofenceTransitionEngine.Reading.INSIDE
+                && state.getStatus() == AttendanceRecord.AttendanceStatus.CHECKED_OUT) {
+            // Auto check back in
+            long started = AttendanceStateCache.stamp();
+            AttendanceRecord updated = attendanceRepository.checkInIfCheckedOut(
+                    state.getRecordId(), latitude, longitude, accuracy, fixTime);
+            if (updated == null) {
+                return concurrentlyChanged(user);
+            }
+            stateCache.load(user.getId(), updated, started);
+            notificationService.sendCheckInNotification(user, geofence.getName());
+            log.info("Auto check-in for user {} at geofence {}", user.getId(), geofence.getName());
+            return new LocationUpdateResult("AUTO_CHECKED_IN",
+                    "You are back in the work area. Checked in automatically.", geofence.getName());
+        }
+
+        if (decision.isTransition() && decision.getReading() == GeofenceTransitionEngine.Reading.OUTSIDE
+                && state.getStatus() == AttendanceRecord.AttendanceStatus.CHECKED_IN) {
+            // Auto check out
+            long started = AttendanceStateCache.stamp();
+            AttendanceRecord updated = attendanceRepository.checkOutIfOpen(
+                    state.getRecordId(), latitude, longitude, accuracy, fixTime);
+            if (updated == null) {
+                return concurrentlyChanged(user);
             }
-            return new LocationUpdateResult("CHECKED_OUT", "You are outside the work area", null);
+            stateCache.load(user.getId(), updated, started);
+            notificationService.sendCheckOutNotification(user);
+            log.info("Auto check-out for user {} - left geofence area", user.getId());
+            return new LocationUpdateResult("AUTO_CHECKED_OUT",
+                    "You left the work area. Checked out automatically.", null);
+        }
+
+        // Fixes inside the hysteresis band (or too inaccurate to use) report the committed state
+        boolean inWorkArea = decision.getReading() == GeofenceTransitionEngine.Reading.INSIDE
+                || (decision.getReading() != GeofenceTransitionEngine.Reading.OUTSIDE && checkedIn);
+        if (inWorkArea) {
+            return new LocationUpdateResult("CHECKED_IN", "You are in the work area",
+                    geofence != null ? geofence.getName() : null);
         }
+        return new LocationUpdateResult("CHECKED_OUT", "You are outside the work area", null);
     }
 
     /**
-     * Mark employees as absent who missed check-in deadline (scheduled job)
+     * Result for an automatic transition that lost to a concurrent change of today's record:
+     * reload the record and report whatever state it is in now
+     */
+    private LocationUpdateResult concurrentlyChanged(User user) {
+        AttendanceRecord record = getTodayAttendance(user);
+        if (record == null) {
+            return new LocationUpdateResult("OUTSIDE", "You are outside the work area", null);
+        }
+        return switch (record.getStatus()) {
+            case ABSENT -> new LocationUpdateResult("ABSENT", "You are marked absent for today", null);
+            case CHECKED_OUT -> new LocationUpdateResult("CHECKED_OUT", "You are outside the work area", null);
+            default -> new LocationUpdateResult("CHECKED_IN", "You are in the work area", null);
+        };
+    }
+
+    /**
+     * Mark employees as absent who missed check-in deadline (scheduled job), for the teams
+     * {@code teamFilter} accepts. Set-based: one
+     * query for who already has a record today, the difference in memory, one bulk insert.
+     * {@code beforeWrite} is asked once, right before that insert, whether this node may still
+     * write; {@code teamFilter} should be a local check, not a round trip per team.
+     * A check-in racing the insert is settled by the unique (userId, workDate) index.
      */
     @Transactional
-    public void markAbsentEmployees() {
-        LocalDateTime startOfDay = LocalDateTime.of(LocalDate.now(), LocalTime.MIN);
-        LocalDateTime endOfDay = LocalDateTime.of(LocalDate.now(), LocalTime.MAX);
+    public void markAbsentEmployees(Predicate<String> teamFilter, BooleanSupplier beforeWrite) {
         LocalTime now = LocalTime.now();
 
-        // Get all teams with work hours configured
-        List<Team> teamsWithWorkHours = teamRepository.findAll().stream()
-                .filter(t -> t.getWorkStartTime() != null && t.getCheckInDeadline() != null)
-                .filter(t -> now.isAfter(t.getCheckInDeadline()))
-                .toList();
-
-        for (Team team : teamsWithWorkHours) {
-            if (team.getEmployeeIds() == null)
-                continue;
-
-            for (String employeeId : team.getEmployeeIds()) {
-                // Check if employee has checked in today
-                List<AttendanceRecord> todayRecords = attendanceRepository
-                        .findByUserIdAndCheckInTimeBetween(employeeId, startOfDay, endOfDay);
-
-                if (todayRecords.isEmpty()) {
-                    // No check-in record - mark as absent
-                    AttendanceRecord absentRecord = AttendanceRecord.builder()
-                            .userId(employeeId)
-                            .checkInTime(LocalDateTime.now())
-                            .status(AttendanceRecord.AttendanceStatus.ABSENT)
-                            .build();
-                    attendanceRepository.save(absentRecord);
-                    log.info("Marked employee {} as absent - missed check-in deadline", employeeId);
-                }
+        // Teams whose check-in deadline has passed
+        Set<String> candidates = new HashSet<>();
+        for (Team team : teamRepository.findByWorkStartTimeIsNotNullAndCheckInDeadlineIsNotNull()) {
+            if (now.isAfter(team.getCheckInDeadline()) && team.getEmployeeIds() != null
+                    && teamFilter.test(team.getId())) {
+                candidates.addAll(team.getEmployeeIds());
+            }
+        }
+        markAbsent(candidates, beforeWrite);
+    }
+
+    /**
+     * Mark the employees of one team absent once its check-in deadline has passed
+     */
+    @Transactional
+    public void markAbsentEmployees(Team team) {
+        if (team.getWorkStartTime() == null || team.getCheckInDeadline() == null || team.getEmployeeIds() == null
+                || !LocalTime.now().isAfter(team.getCheckInDeadline())) {
+            return;
+        }
+        markAbsent(new HashSet<>(team.getEmployeeIds()), () -> true);
+    }
+
+    private void markAbsent(Set<String> candidates, BooleanSupplier beforeWrite) {
+        Timer.Sample sample = Timer.start();
+        LocalDate today = LocalDate.now();
+
+        absenceSweepChecked.increment(candidates.size());
+        List<AttendanceRecord> inserted = List.of();
+        if (!candidates.isEmpty()) {
+            candidates.removeAll(attendanceRepository.findUserIdsWithRecordOn(today, candidates));
+
+            LocalDateTime markedAt = LocalDateTime.now();
+            List<AttendanceRecord> absentRecords = new ArrayList<>(candidates.size());
+            for (String employeeId : candidates) {
+                absentRecords.add(AttendanceRecord.builder()
+                        .userId(employeeId)
+                        .checkInTime(markedAt)
+                        .workDate(today)
+                        .status(AttendanceRecord.AttendanceStatus.ABSENT)
+                        .version(0L)
+                        .createdAt(markedAt)
+                        .updatedAt(markedAt)
+                        .build());
             }
+            if (!absentRecords.isEmpty() && !beforeWrite.getAsBoolean()) {
+                log.info("Skipping absent marking for {} employees: this node no longer runs the sweep",
+                        absentRecords.size());
+                sample.stop(absenceSweepTimer);
+                return;
+            }
+            inserted = attendanceRepository.insertNewForDay(absentRecords);
+            // Bulk writes do not go through the save listener
+            inserted.forEach(record -> stateCache.evict(record.getUserId()));
+        }
+
+        absenceSweepMarked.increment(inserted.size());
+        long elapsed = sample.stop(absenceSweepTimer);
+        if (!inserted.isEmpty()) {
+            log.info("Marked {} employees as absent - missed check-in deadline ({} ms)", inserted.size(),
+                    elapsed / 1_000_000);
         }
     }
 
@@ -465,6 +822,8 @@ public class AttendanceService {
         private String status;
         private String message;
         private String geofenceName;
+        private double distanceToBoundaryMeters;
+        private int nextPingSeconds;
 
         public LocationUpdateResult(String status, String message, String geofenceName) {
             this.status = status;
@@ -483,6 +842,33 @@ public class AttendanceService {
         public String getGeofenceName() {
             return geofenceName;
         }
+
+        /**
+         * Whether this update committed an automatic check-in or check-out
+         */
+        public boolean isTransition() {
+            return "AUTO_CHECKED_IN".equals(status) || "AUTO_CHECKED_OUT".equals(status);
+        }
+
+        public double getDistanceToBoundaryMeters() {
+            return distanceToBoundaryMeters;
+        }
+
+        public int getNextPingSeconds() {
+            return nextPingSeconds;
+        }
+
+        /**
+         * Response body shared by the HTTP and WebSocket location endpoints
+         */
+        public Map<String, Object> toResponseBody() {
+            return Map.of(
+                    "status", status,
+                    "message", message,
+                    "geofenceName", geofenceName != null ? geofenceName : "",
+                    "distanceToBoundaryMeters", Math.round(distanceToBoundaryMeters * 10) / 10.0,
+                    "nextPingSeconds", nextPingSeconds);
+        }
     }
 
     /**
@@ -503,38 +889,26 @@ public class AttendanceService {
     }
 
     /**
-     * Auto check-out users who are still checked in after their team's work hours
+     * Auto check-out one team's open check-ins once its work hours have ended: one conditional
+     * multi-document update, checked out at the team's end time
      */
     @Transactional
-    public void autoCheckOutPastWorkHours() {
-        LocalDateTime startOfDay = LocalDateTime.of(LocalDate.now(), LocalTime.MIN);
-        LocalDateTime endOfDay = LocalDateTime.of(LocalDate.now(), LocalTime.MAX);
-        LocalTime now = LocalTime.now();
-
-        List<Team> teams = teamRepository.findAll();
-        for (Team team : teams) {
-            if (team.getWorkEndTime() == null || team.getEmployeeIds() == null)
-                continue;
-
-            if (now.isAfter(team.getWorkEndTime())) {
-                for (String employeeId : team.getEmployeeIds()) {
-                    List<AttendanceRecord> records = attendanceRepository
-                            .findByUserIdAndCheckInTimeBetween(employeeId, startOfDay, endOfDay);
-
-                    for (AttendanceRecord record : records) {
-                        if (record.getCheckOutTime() == null
-                                && record.getStatus() == AttendanceRecord.AttendanceStatus.CHECKED_IN) {
-                            // Set checkout time exactly to their work end time
-                            record.setCheckOutTime(LocalDateTime.of(LocalDate.now(), team.getWorkEndTime()));
-                            record.setStatus(AttendanceRecord.AttendanceStatus.CHECKED_OUT);
-                            attendanceRepository.save(record);
-                            log.info("Auto checked out employee {} at the end of work hours ({})", employeeId,
-                                    team.getWorkEndTime());
-                        }
-                    }
-                }
-            }
-        }
+    public void autoCheckOutPastWorkHours(Team team) {
+        if (team.getWorkEndTime() == null || !LocalTime.now().isAfter(team.getWorkEndTime())
+                || team.getEmployeeIds() == null || team.getEmployeeIds().isEmpty()) {
+            return;
+        }
+        LocalDate today = LocalDate.now();
+        // Set checkout time exactly to their work end time
+        long count = attendanceRepository.checkOutAllOpen(team.getEmployeeIds(), today,
+                LocalDateTime.of(today, team.getWorkEndTime()));
+        if (count > 0) {
+            // Bulk updates do not go through the save listener
+            team.getEmployeeIds().forEach(stateCache::evict);
+            log.info("Auto checked out {} employees of team {} at the end of work hours ({})", count,
+                    team.getId(), team.getWorkEndTime());
+        }
+        autoCheckedOut.increment(count);
     }
 
     /**
@@ -542,15 +916,25 @@ public class AttendanceService {
      */
     @Transactional
     public void detectLateArrivals(LocalTime lateThreshold) {
-        LocalDateTime startOfDay = LocalDateTime.of(LocalDate.now(), LocalTime.MIN);
-        LocalDateTime endOfDay = LocalDateTime.of(LocalDate.now(), LocalTime.MAX);
-        List<AttendanceRecord> todayRecords = attendanceRepository.findByCheckInTimeBetween(startOfDay, endOfDay);
+        List<AttendanceRecord> todayRecords = attendanceRepository.findByWorkDate(LocalDate.now());
 
         for (AttendanceRecord record : todayRecords) {
             if (record.getCheckInTime() != null &&
                     record.getCheckInTime().toLocalTime().isAfter(lateThreshold)) {
                 record.setStatus(AttendanceRecord.AttendanceStatus.LATE);
-                attendanceRepository.save(record);
+                boolean saved = withUserLock(record.getUserId(), () -> {
+                    try {
+                        attendanceRepository.save(record);
+                        return true;
+                    } catch (OptimisticLockingFailureException e) {
+                        log.debug("Attendance of user {} changed while detecting late arrivals, skipping",
+                                record.getUserId());
+                        return false;
+                    }
+                });
+                if (!saved) {
+                    continue;
+                }
 
                 // Notify by userId -> fetch user if needed
                 if (record.getUserId() != null) {
@@ -0,0 +1,240 @@
+package com.geoattendance.service;
+
+import com.geoattendance.entity.AttendanceRecord;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.core.mapping.event.AbstractMongoEventListener;
+import org.springframework.data.mongodb.core.mapping.event.AfterDeleteEvent;
+import org.springframework.data.mongodb.core.mapping.event.AfterSaveEvent;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Per-user cache of today's attendance state, so steady-state location updates need no
+ * database reads. It is written through: every save of an attendance record updates the
+ * cached state of its user, whichever service or scheduler made the change. Entries from
+ * an earlier day are ignored and reloaded; changes made on other instances are picked up
+ * within {@code attendance.state-cache.ttl-seconds}.
+ * <p>
+ * Loads are compare-and-set: callers take a {@link #stamp()} before reading or writing the
+ * record, and a load never replaces an entry evicted or cleared after that stamp, nor a
+ * newer version of the same record. A bulk write that evicts while a read is in flight
+ * therefore cannot have its change overwritten by the stale read.
+ */
+@Component
+@Slf4j
+public class AttendanceStateCache extends AbstractMongoEventListener<AttendanceRecord> {
+
+    /**
+     * Immutable view of a user's first attendance record today (if any) and their last known position
+     */
+    public static final class TodayState {
+        private final LocalDate date;
+        private final String recordId;
+        private final AttendanceRecord.AttendanceStatus status;
+        private final LocalDateTime checkInTime;
+        private final String lastGeofenceId;
+        private final Double lastLatitude;
+        private final Double lastLongitude;
+        // Record version, -1 without a record or version
+        private final long version;
+        // When the entry was loaded or written through; for an evicted marker, when it was evicted
+        private final long stampNanos;
+        private final boolean evicted;
+
+        private TodayState(LocalDate date, String recordId, AttendanceRecord.AttendanceStatus status,
+                           LocalDateTime checkInTime, String lastGeofenceId, Double lastLatitude, Double lastLongitude,
+                           long version, long stampNanos, boolean evicted) {
+            this.date = date;
+            this.recordId = recordId;
+            this.status = status;
+            this.checkInTime = checkInTime;
+            this.lastGeofenceId = lastGeofenceId;
+            this.lastLatitude = lastLatitude;
+            this.lastLongitude = lastLongitude;
+            this.version = version;
+            this.stampNanos = stampNanos;
+            this.evicted = evicted;
+        }
+
+        private static TodayState of(LocalDate date, AttendanceRecord record, TodayState previous, long stampNanos) {
+            return new TodayState(date,
+                record != null ? record.getId() : null,
+                record != null ? record.getStatus() : null,
+                record != null ? record.getCheckInTime() : null,
+                previous != null ? previous.lastGeofenceId : null,
+                previous != null ? previous.lastLatitude : null,
+                previous != null ? previous.lastLongitude : null,
+                record != null && record.getVersion() != null ? record.getVersion() : -1,
+                stampNanos, false);
+        }
+
+        private static TodayState evictedAt(long stampNanos) {
+            return new TodayState(null, null, null, null, null, null, null, -1, stampNanos, true);
+        }
+
+        private TodayState withPosition(double latitude, double longitude, String geofenceId) {
+            return new TodayState(date, recordId, status, checkInTime, geofenceId, latitude, longitude,
+                version, stampNanos, false);
+        }
+
+        private boolean isFor(LocalDate day) {
+            return !evicted && date.equals(day);
+        }
+
+        /**
+         * Whether the user has any attendance record today
+         */
+        public boolean hasRecord() {
+            return recordId != null;
+        }
+
+        public LocalDate getDate() {
+            return date;
+        }
+
+        public String getRecordId() {
+            return recordId;
+        }
+
+        public AttendanceRecord.AttendanceStatus getStatus() {
+            return status;
+        }
+
+        public LocalDateTime getCheckInTime() {
+            return checkInTime;
+        }
+
+        public String getLastGeofenceId() {
+            return lastGeofenceId;
+        }
+
+        public Double getLastLatitude() {
+            return lastLatitude;
+        }
+
+        public Double getLastLongitude() {
+            return lastLongitude;
+        }
+    }
+
+    private final Map<String, TodayState> states = new ConcurrentHashMap<>();
+
+    // Last evictAll or delete; loads whose read started earlier are not cached
+    private volatile long clearedAtNanos = stamp();
+
+    // 0 disables the cache
+    @Value("${attendance.state-cache.ttl-seconds:30}")
+    private long ttlSeconds;
+
+    /**
+     * Take before reading or writing a record whose result is then passed to {@link #load}
+     */
+    public static long stamp() {
+        return System.nanoTime();
+    }
+
+    /**
+     * Cached state for today, or null when it has to be loaded
+     */
+    public TodayState get(String userId) {
+        TodayState state = states.get(userId);
+        if (ttlSeconds <= 0 || state == null || !state.isFor(LocalDate.now())
+                || System.nanoTime() - state.stampNanos > ttlSeconds * 1_000_000_000L) {
+            return null;
+        }
+        return state;
+    }
+
+    /**
+     * Cache the user's first record today as read or written (null for none) by an operation
+     * that started at {@code startedNanos}, unless the entry was evicted since or already holds
+     * newer state. Returns the state the caller should act on.
+     */
+    public TodayState load(String userId, AttendanceRecord firstRecordToday, long startedNanos) {
+        LocalDate today = LocalDate.now();
+        TodayState loaded = TodayState.of(today, firstRecordToday, null, System.nanoTime());
+        if (startedNanos - clearedAtNanos < 0) {
+            return loaded;
+        }
+        TodayState cached = states.compute(userId, (id, previous) -> {
+            if (previous == null) {
+                return loaded;
+            }
+            boolean changedSince = previous.stampNanos - startedNanos > 0;
+            if (previous.evicted) {
+                return changedSince ? previous : loaded;
+            }
+            if (!previous.date.equals(today)) {
+                return loaded;
+            }
+            if (changedSince && (firstRecordToday == null
+                    ? previous.recordId != null
+                    : firstRecordToday.getId().equals(previous.recordId) && previous.version > loaded.version)) {
+                return previous;
+            }
+            return TodayState.of(today, firstRecordToday, previous, loaded.stampNanos);
+        });
+        return cached.evicted ? loaded : cached;
+    }
+
+    public void recordPosition(String userId, double latitude, double longitude, String geofenceId) {
+        states.computeIfPresent(userId, (id, state) ->
+            state.evicted ? state : state.withPosition(latitude, longitude, geofenceId));
+    }
+
+    /**
+     * Drop the user's state after a write that bypassed the save listener. Loads that started
+     * before this call are not cached.
+     */
+    public void evict(String userId) {
+        states.put(userId, TodayState.evictedAt(System.nanoTime()));
+    }
+
+    public void evictAll() {
+        clearedAtNanos = System.nanoTime();
+        states.clear();
+    }
+
+    public int size() {
+        return states.size();
+    }
+
+    /**
+     * Write-through: a saved record replaces the cached state when it is the user's tracked
+     * record for today, or the first one they get today. Later records of the same day
+     * leave the state alone, matching {@link AttendanceService#getTodayAttendance}.
+     */
+    @Override
+    public void onAfterSave(AfterSaveEvent<AttendanceRecord> event) {
+        AttendanceRecord record = event.getSource();
+        if (record.getUserId() == null) {
+            return;
+        }
+        LocalDate today = LocalDate.now();
+        boolean forToday = record.getCheckInTime() != null && record.getCheckInTime().toLocalDate().equals(today);
+        states.computeIfPresent(record.getUserId(), (id, state) -> {
+            if (state.evicted) {
+                return state;
+            }
+            if (!state.date.equals(today)) {
+                return null;
+            }
+            if (record.getId().equals(state.recordId) || (forToday && state.recordId == null)) {
+                return forToday ? TodayState.of(today, record, state, System.nanoTime()) : null;
+            }
+            return state;
+        });
+    }
+
+    @Override
+    public void onAfterDelete(AfterDeleteEvent<AttendanceRecord> event) {
+        // The event only carries the delete filter, so start over
+        evictAll();
+        log.debug("Cleared attendance state cache after a delete");
+    }
+}
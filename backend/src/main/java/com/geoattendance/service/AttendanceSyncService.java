@@ -0,0 +1,246 @@
+package com.geoattendance.service;
+
+import com.geoattendance.dto.AttendanceSyncRequest;
+import com.geoattendance.dto.AttendanceSyncResponse;
+import com.geoattendance.entity.AttendanceRecord;
+import com.geoattendance.entity.SyncCursor;
+import com.geoattendance.entity.User;
+import com.mongodb.MongoException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Service;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Applies a batch of attendance events queued on a device while it was offline, in client
+ * sequence order, through the same {@link AttendanceService} paths as the live endpoints.
+ * Each event is claimed by atomically advancing the device's {@link SyncCursor} before it is
+ * applied, so a retried or concurrent upload never applies the same event twice. Events that
+ * fail are consumed too, since retrying them would fail the same way, unless the failure came
+ * from the database (a timeout, say): then the cursor moves back, the batch stops and the
+ * response carries an error so the client resends from that event.
+ */
+@Service
+@Slf4j
+public class AttendanceSyncService {
+
+    private static final String DEFAULT_DEVICE = "default";
+    private static final long NO_SEQUENCE = Long.MIN_VALUE;
+
+    private final AttendanceService attendanceService;
+    private final MongoTemplate mongoTemplate;
+    private final Map<AttendanceSyncResponse.Outcome, Counter> eventCounters =
+            new EnumMap<>(AttendanceSyncResponse.Outcome.class);
+
+    @Value("${attendance.sync.max-events:1000}")
+    private int maxEvents;
+
+    public AttendanceSyncService(AttendanceService attendanceService, MongoTemplate mongoTemplate,
+                                 MeterRegistry meterRegistry) {
+        this.attendanceService = attendanceService;
+        this.mongoTemplate = mongoTemplate;
+        for (AttendanceSyncResponse.Outcome outcome : AttendanceSyncResponse.Outcome.values()) {
+            eventCounters.put(outcome, Counter.builder("attendance.sync.events")
+                    .tag("outcome", outcome.name().toLowerCase())
+                    .description("Offline attendance events received through /attendance/sync")
+                    .register(meterRegistry));
+        }
+    }
+
+    public AttendanceSyncResponse sync(User user, AttendanceSyncRequest request) {
+        List<AttendanceSyncRequest.Event> events = request.getEvents();
+        if (events == null || events.isEmpty()) {
+            throw new IllegalArgumentException("At least one event is required");
+        }
+        if (events.size() > maxEvents) {
+            throw new IllegalArgumentException("At most " + maxEvents + " events per request");
+        }
+        for (int i = 0; i < events.size(); i++) {
+            AttendanceSyncRequest.Event event = events.get(i);
+            if (event == null || event.getSequence() == null || event.getType() == null) {
+                throw new IllegalArgumentException("Event " + i + " must have a sequence and a type");
+            }
+        }
+
+        String deviceId = request.getDeviceId() != null && !request.getDeviceId().isBlank()
+                ? request.getDeviceId() : DEFAULT_DEVICE;
+        String cursorId = user.getId() + ":" + deviceId;
+        SyncCursor cursor = mongoTemplate.findById(cursorId, SyncCursor.class);
+        long lastSequence = cursor != null && cursor.getLastSequence() != null ? cursor.getLastSequence() : NO_SEQUENCE;
+
+        List<AttendanceSyncRequest.Event> ordered = new ArrayList<>(events);
+        ordered.sort(Comparator.comparingLong(AttendanceSyncRequest.Event::getSequence));
+
+        List<AttendanceSyncResponse.EventResult> results = new ArrayList<>(ordered.size());
+        int applied = 0;
+        int duplicates = 0;
+        int rejected = 0;
+        String error = null;
+        for (AttendanceSyncRequest.Event event : ordered) {
+            long sequence = event.getSequence();
+            AttendanceSyncResponse.EventResult result;
+            // Cheap check first; the claim settles races with a concurrent upload
+            Long previous = sequence <= lastSequence ? null : claim(cursorId, user.getId(), deviceId, sequence);
+            if (previous == null) {
+                result = new AttendanceSyncResponse.EventResult(sequence, AttendanceSyncResponse.Outcome.DUPLICATE,
+                        null, "Already received");
+            } else {
+                try {
+                    result = apply(user, event);
+                } catch (RuntimeException e) {
+                    // A database failure; give the event back and let the client resend it
+                    log.warn("Offline event {} of user {} on device {} failed, stopping the batch: {}",
+                            sequence, user.getId(), deviceId, e.getMessage());
+                    unclaim(cursorId, sequence, previous);
+                    error = "Could not apply event " + sequence + ", resend from it";
+                    eventCounters.get(AttendanceSyncResponse.Outcome.FAILED).increment();
+                    results.add(new AttendanceSyncResponse.EventResult(sequence,
+                            AttendanceSyncResponse.Outcome.FAILED, null, e.getMessage()));
+                    break;
+                }
+            }
+            lastSequence = Math.max(lastSequence, sequence);
+
+            switch (result.getOutcome()) {
+                case APPLIED -> applied++;
+                case DUPLICATE -> duplicates++;
+                case REJECTED -> rejected++;
+                default -> { }
+            }
+            eventCounters.get(result.getOutcome()).increment();
+            results.add(result);
+        }
+
+        log.info("Synced {} offline events for user {} on device {}: {} applied, {} duplicates, {} rejected{}",
+                results.size(), user.getId(), deviceId, applied, duplicates, rejected,
+                error != null ? ", then stopped on a failure" : "");
+        return AttendanceSyncResponse.builder()
+                .lastSequence(lastSequence)
+                .applied(applied)
+                .duplicates(duplicates)
+                .rejected(rejected)
+                .results(results)
+                .error(error)
+                .build();
+    }
+
+    /**
+     * Advance the device cursor to {@code sequence} if it is still below it, returning where
+     * it was before ({@link #NO_SEQUENCE} for a new cursor), or null when the event was already
+     * claimed. When the cursor is already there, the filter misses and the upsert collides on
+     * _id instead.
+     */
+    private Long claim(String cursorId, String userId, String deviceId, long sequence) {
+        Query query = new Query(Criteria.where("_id").is(cursorId).and("lastSequence").lt(sequence));
+        Update update = new Update()
+                .set("lastSequence", sequence)
+                .set("updatedAt", LocalDateTime.now())
+                .setOnInsert("userId", userId)
+                .setOnInsert("deviceId", deviceId);
+        try {
+            SyncCursor before = mongoTemplate.findAndModify(query, update,
+                    FindAndModifyOptions.options().upsert(true).returnNew(false), SyncCursor.class);
+            return before != null && before.getLastSequence() != null ? before.getLastSequence() : NO_SEQUENCE;
+        } catch (DuplicateKeyException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Move the cursor back to {@code previous}, unless another upload has moved it on since
+     */
+    private void unclaim(String cursorId, long sequence, long previous) {
+        try {
+            mongoTemplate.updateFirst(
+                    new Query(Criteria.where("_id").is(cursorId).and("lastSequence").is(sequence)),
+                    new Update().set("lastSequence", previous).set("updatedAt", LocalDateTime.now()),
+                    SyncCursor.class);
+        } catch (RuntimeException e) {
+            log.error("Could not release offline event {} on cursor {}; it will read as a duplicate: {}",
+                    sequence, cursorId, e.getMessage());
+        }
+    }
+
+    private AttendanceSyncResponse.EventResult apply(User user, AttendanceSyncRequest.Event event) {
+        long sequence = event.getSequence();
+        if (event.getLatitude() == null || event.getLongitude() == null) {
+            return rejected(sequence, "Latitude and longitude are required");
+        }
+        Instant now = Instant.now();
+        Instant occurredAt = event.getTimestamp() != null ? Instant.ofEpochMilli(event.getTimestamp()) : now;
+        if (occurredAt.isAfter(now)) {
+            occurredAt = now;
+        }
+        LocalDateTime at = LocalDateTime.ofInstant(occurredAt, ZoneId.systemDefault());
+        // Attendance is tracked per day, so only today's queue can still change anything
+        if (!at.toLocalDate().equals(LocalDate.now())) {
+            return rejected(sequence, "Event is from an earlier day");
+        }
+
+        try {
+            switch (event.getType()) {
+                case CHECK_IN -> {
+                    AttendanceRecord record = attendanceService.manualCheckIn(
+                            user, event.getLatitude(), event.getLongitude(), event.getAccuracy(), at);
+                    return applied(sequence, record.getStatus().name(), "Checked in");
+                }
+                case CHECK_OUT -> {
+                    AttendanceRecord record = attendanceService.manualCheckOut(
+                            user, event.getLatitude(), event.getLongitude(), event.getAccuracy(), at);
+                    return applied(sequence, record.getStatus().name(), "Checked out");
+                }
+                default -> {
+                    AttendanceService.LocationUpdateResult result = attendanceService.processLocationUpdate(
+                            user, event.getLatitude(), event.getLongitude(), event.getAccuracy(), occurredAt);
+                    return applied(sequence, result.getStatus(), result.getMessage());
+                }
+            }
+        } catch (RuntimeException e) {
+            if (isInfrastructureFailure(e)) {
+                throw e;
+            }
+            // Rule violations, and bugs the same event would hit again on every retry
+            log.debug("Offline event {} of user {} rejected: {}", sequence, user.getId(), e.getMessage());
+            return rejected(sequence, e.getMessage());
+        }
+    }
+
+    /**
+     * Whether the failure came from the database rather than from the event, anywhere in the
+     * cause chain, since callers may wrap it
+     */
+    private static boolean isInfrastructureFailure(Throwable e) {
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (cause instanceof DataAccessException || cause instanceof MongoException) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static AttendanceSyncResponse.EventResult applied(long sequence, String status, String message) {
+        return new AttendanceSyncResponse.EventResult(sequence, AttendanceSyncResponse.Outcome.APPLIED, status, message);
+    }
+
+    private static AttendanceSyncResponse.EventResult rejected(long sequence, String message) {
+        return new AttendanceSyncResponse.EventResult(sequence, AttendanceSyncResponse.Outcome.REJECTED, null, message);
+    }
+}
@@ -1,7 +1,6 @@
 package com.geoattendance.service;
 
 import com.geoattendance.entity.User;
-import com.geoattendance.repository.UserRepository;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.stereotype.Service;
@@ -14,11 +13,11 @@ import org.springframework.stereotype.Service;
 @Service
 public class AuthenticationService {
 
-    private final UserRepository userRepository;
+    private final UserCache userCache;
 
     // Explicit constructor (replaces Lombok @RequiredArgsConstructor)
-    public AuthenticationService(UserRepository userRepository) {
-        this.userRepository = userRepository;
+    public AuthenticationService(UserCache userCache) {
+        this.userCache = userCache;
     }
 
     /**
@@ -38,7 +37,7 @@ public class AuthenticationService {
             throw new RuntimeException("Unauthenticated: principal has no username");
         }
 
-        return userRepository.findByEmail(username)
+        return userCache.findByEmail(username)
                 .orElseThrow(() -> new RuntimeException("Authenticated user not found: " + username));
     }
 
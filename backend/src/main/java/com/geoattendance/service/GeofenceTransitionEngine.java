@@ -0,0 +1,164 @@
+package com.geoattendance.service;
+
+import com.geoattendance.entity.Geofence;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Debounces automatic check-in/check-out against GPS noise.
+ * A fix reads as inside only when it is at least the enter margin deep inside a geofence,
+ * and as outside only when every geofence boundary is further away than the exit margin
+ * plus the reported accuracy; anything in between keeps the current state. A change is
+ * committed once the opposite reading has persisted for the minimum dwell time. Fixes
+ * less accurate than {@code geofencing.accuracy-threshold} are ignored. A pending change
+ * whose last supporting fix is older than the dwell time starts over, so a long silence
+ * never counts towards it.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class GeofenceTransitionEngine {
+
+    public enum Reading {
+        INSIDE, OUTSIDE, UNCERTAIN, IGNORED
+    }
+
+    /**
+     * Outcome of one location fix. {@code geofence} is the geofence containing the fix, if any.
+     */
+    public static final class Decision {
+        private final Reading reading;
+        private final boolean transition;
+        private final Geofence geofence;
+
+        private Decision(Reading reading, boolean transition, Geofence geofence) {
+            this.reading = reading;
+            this.transition = transition;
+            this.geofence = geofence;
+        }
+
+        public Reading getReading() {
+            return reading;
+        }
+
+        /**
+         * Whether the committed state should flip now
+         */
+        public boolean isTransition() {
+            return transition;
+        }
+
+        public Geofence getGeofence() {
+            return geofence;
+        }
+    }
+
+    private static final class Pending {
+        private final Reading reading;
+        private final Instant since;
+        // Latest fix that agreed with the reading, by fix time and by local clock
+        private final Instant lastSeen;
+        private final long touchedAtNanos;
+
+        private Pending(Reading reading, Instant since, Instant lastSeen) {
+            this.reading = reading;
+            this.since = since;
+            this.lastSeen = lastSeen;
+            this.touchedAtNanos = System.nanoTime();
+        }
+
+        private boolean continuedBy(Reading next, Instant observedAt, long maxGapSeconds) {
+            return reading == next && Duration.between(lastSeen, observedAt).getSeconds() <= maxGapSeconds;
+        }
+    }
+
+    private final GeofencingService geofencingService;
+
+    // Opposite reading each user has been showing since when; absent while readings agree with the committed state
+    private final Map<String, Pending> pending = new ConcurrentHashMap<>();
+
+    @Value("${geofencing.transition.enter-margin:10}")
+    private double enterMarginMeters;
+
+    @Value("${geofencing.transition.exit-margin:25}")
+    private double exitMarginMeters;
+
+    @Value("${geofencing.transition.min-dwell-seconds:60}")
+    private long minDwellSeconds;
+
+    /**
+     * Whether the user is part-way through the dwell time of a state change
+     */
+    public boolean hasPending(String userId) {
+        return pending.containsKey(userId);
+    }
+
+    /**
+     * Evaluate a fix for a user whose committed state is {@code checkedIn}
+     */
+    public Decision evaluate(String userId, boolean checkedIn, double latitude, double longitude,
+                             Float accuracy, Instant observedAt) {
+        if (accuracy != null && accuracy > geofencingService.getAccuracyThresholdMeters()) {
+            return new Decision(Reading.IGNORED, false, null);
+        }
+
+        double accuracyMeters = accuracy != null ? accuracy : 0;
+        Geofence geofence = geofencingService.findGeofenceContainingPoint(latitude, longitude, enterMarginMeters);
+        Reading reading;
+        if (geofence != null) {
+            reading = Reading.INSIDE;
+        } else if (!geofencingService.isNearAnyGeofence(latitude, longitude, exitMarginMeters + accuracyMeters)) {
+            reading = Reading.OUTSIDE;
+        } else {
+            reading = Reading.UNCERTAIN;
+            geofence = geofencingService.findGeofenceContainingPoint(latitude, longitude, 0);
+        }
+
+        // Uncertain fixes neither confirm nor cancel a pending change
+        if (reading == Reading.UNCERTAIN) {
+            return new Decision(reading, false, geofence);
+        }
+        if (reading == (checkedIn ? Reading.INSIDE : Reading.OUTSIDE)) {
+            pending.remove(userId);
+            return new Decision(reading, false, geofence);
+        }
+
+        Pending current = pending.compute(userId, (id, existing) ->
+            existing != null && existing.continuedBy(reading, observedAt, minDwellSeconds)
+                ? new Pending(reading, existing.since, max(existing.lastSeen, observedAt))
+                : new Pending(reading, observedAt, observedAt));
+        if (Duration.between(current.since, observedAt).getSeconds() < minDwellSeconds) {
+            log.debug("User {} reads {} for {}s, waiting for dwell time", userId, reading,
+                Duration.between(current.since, observedAt).getSeconds());
+            return new Decision(reading, false, geofence);
+        }
+        pending.remove(userId, current);
+        return new Decision(reading, true, geofence);
+    }
+
+    /**
+     * Drop pending changes nobody has confirmed within the dwell time; the next fix would
+     * start them over anyway
+     */
+    @Scheduled(fixedDelayString = "${geofencing.transition.evict-interval-ms:60000}")
+    public void evictIdle() {
+        long cutoff = System.nanoTime() - minDwellSeconds * 1_000_000_000L;
+        int before = pending.size();
+        pending.values().removeIf(p -> p.touchedAtNanos - cutoff < 0);
+        if (pending.size() < before) {
+            log.debug("Evicted {} idle pending transitions", before - pending.size());
+        }
+    }
+
+    private static Instant max(Instant a, Instant b) {
+        return a.isAfter(b) ? a : b;
+    }
+}
@@ -3,18 +3,38 @@ package com.geoattendance.service;
 import com.geoattendance.entity.Geofence;
 import com.geoattendance.entity.AttendanceRecord;
 import com.geoattendance.entity.User;
+import com.geoattendance.geo.CompiledGeofence;
+import com.geoattendance.geo.GeoBounds;
+import com.geoattendance.geo.GeoMath;
+import com.geoattendance.geo.GeofenceCatalog;
+import com.geoattendance.geo.GeofenceCellCache;
+import com.geoattendance.geo.GeofenceSnapshot;
+import com.geoattendance.geo.Geohash;
+import com.geoattendance.geo.StrTree;
 import com.geoattendance.repository.GeofenceRepository;
 import com.geoattendance.repository.AttendanceRepository;
+import jakarta.annotation.PostConstruct;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.cache.annotation.Cacheable;
 import org.springframework.cache.annotation.CacheEvict;
 
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.IntStream;
 
 @Service
 @RequiredArgsConstructor
@@ -25,6 +45,64 @@ public class GeofencingService {
     private final AttendanceRepository attendanceRepository;
     private final NotificationService notificationService;
     
+    // Compiled active geofences, swapped for a new version whenever a geofence is saved or deleted
+    private final AtomicReference<GeofenceSnapshot> snapshot = new AtomicReference<>();
+    
+    // Bumped whenever this instance saves, deletes or refreshes geofences, whatever the lookup strategy
+    private final AtomicLong geofenceVersion = new AtomicLong();
+    
+    // Geofence count and newest updatedAt when last checked, to notice changes made elsewhere
+    private volatile ChangeMarker changeMarker;
+    
+    // Encoded per-manager catalogs, re-encoded lazily once the snapshot version moves on
+    private final Map<String, GeofenceCatalog> catalogs = new ConcurrentHashMap<>();
+    
+    @Value("${geofencing.cell-cache.enabled:true}")
+    private boolean cellCacheEnabled;
+    
+    @Value("${geofencing.cell-cache.precision:7}")
+    private int cellCachePrecision;
+    
+    @Value("${geofencing.cell-cache.max-entries:100000}")
+    private int cellCacheMaxEntries;
+    
+    private GeofenceCellCache cellCache;
+    
+    static final String LOOKUP_IN_MEMORY = "in-memory";
+    static final String LOOKUP_MONGO = "mongo";
+    
+    // "in-memory" (spatial index + cell cache) or "mongo" (2dsphere query + exact check)
+    @Value("${geofencing.lookup-strategy:in-memory}")
+    private String lookupStrategy;
+    
+    // Largest radius among active circles, bounding the $nearSphere search; null until first needed
+    private volatile MaxRadius maxActiveRadius;
+    
+    // Re-read from the database at least this often, so circles saved on other instances are found
+    @Value("${geofencing.mongo.max-radius-refresh-seconds:30}")
+    private long maxRadiusRefreshSeconds;
+    
+    @Value("${geofencing.accuracy-threshold:100}")
+    private float accuracyThresholdMeters;
+    
+    @Value("${geofencing.batch.parallel-threshold:256}")
+    private int batchParallelThreshold;
+    
+    @Value("${geofencing.ping.min-seconds:15}")
+    private int pingMinSeconds;
+    
+    @Value("${geofencing.ping.max-seconds:600}")
+    private int pingMaxSeconds;
+    
+    // Fastest plausible approach to a boundary (meters per second)
+    @Value("${geofencing.ping.assumed-speed-mps:15}")
+    private double pingAssumedSpeedMps;
+    
+    @PostConstruct
+    void initCellCache() {
+        cellCache = new GeofenceCellCache(cellCachePrecision, cellCacheMaxEntries);
+    }
+    
     /**
      * Check if a point (latitude, longitude) is inside a circular geofence
      */
@@ -33,12 +111,15 @@ public class GeofencingService {
             return false;
         }
         
-        double distance = calculateDistance(
+        if (geofence.getLatitude() == null || geofence.getLongitude() == null || geofence.getRadiusMeters() == null) {
+            return false;
+        }
+        
+        return GeoMath.isWithinDistance(
             latitude, longitude,
-            geofence.getLatitude(), geofence.getLongitude()
+            geofence.getLatitude(), geofence.getLongitude(),
+            geofence.getRadiusMeters()
         );
-        
-        return distance <= geofence.getRadiusMeters();
     }
     
     /**
@@ -49,97 +130,447 @@ public class GeofencingService {
             return false;
         }
         
-        // Implementation of ray casting algorithm for polygon point-in-polygon test
-        // This is a simplified version - production code should use more robust algorithms
-        try {
-            List<Map<String, Double>> coordinates = geofence.getPolygonCoordinates();
-            if (coordinates == null || coordinates.isEmpty()) {
-                return false;
+        return CompiledGeofence.compile(geofence).contains(latitude, longitude);
+    }
+    
+    /**
+     * Check if a user is inside any active geofence.
+     * Points in geohash cells already known to be wholly inside or outside are answered
+     * from the cell cache; otherwise only geofences whose bounding box covers the point
+     * are tested exactly.
+     */
+    public Geofence findGeofenceContainingPoint(Double latitude, Double longitude) {
+        if (isMongoLookup()) {
+            return locateInMongo(null, latitude, longitude);
+        }
+        CompiledGeofence found = locate(activeSnapshot(), null, latitude, longitude);
+        return found != null ? found.getGeofence() : null;
+    }
+    
+    /**
+     * Find the first of a manager's active geofences that contains the point
+     */
+    public Geofence findGeofenceContainingPoint(String managerId, Double latitude, Double longitude) {
+        if (managerId == null) {
+            return null;
+        }
+        if (isMongoLookup()) {
+            return locateInMongo(managerId, latitude, longitude);
+        }
+        CompiledGeofence found = locate(activeSnapshot(), managerId, latitude, longitude);
+        return found != null ? found.getGeofence() : null;
+    }
+    
+    /**
+     * Classify many points at once against one snapshot of the active geofences.
+     * Entry i of the result is the geofence containing point i, or null.
+     * Large batches are evaluated in parallel. Always served from the in-process index,
+     * whatever the configured lookup strategy.
+     *
+     * @param managerId restrict to this manager's geofences, or null for all active geofences
+     */
+    public List<Geofence> findGeofencesContainingPoints(String managerId, double[] latitudes, double[] longitudes) {
+        if (latitudes.length != longitudes.length) {
+            throw new IllegalArgumentException("Latitude and longitude arrays differ in length");
+        }
+        GeofenceSnapshot current = activeSnapshot();
+        Geofence[] results = new Geofence[latitudes.length];
+        IntStream indices = IntStream.range(0, latitudes.length);
+        if (latitudes.length >= batchParallelThreshold) {
+            indices = indices.parallel();
+        }
+        indices.forEach(i -> {
+            CompiledGeofence found = locate(current, managerId, latitudes[i], longitudes[i]);
+            results[i] = found != null ? found.getGeofence() : null;
+        });
+        return Arrays.asList(results);
+    }
+    
+    public float getAccuracyThresholdMeters() {
+        return accuracyThresholdMeters;
+    }
+    
+    /**
+     * Distance in meters from the point to the nearest active geofence boundary, whether the
+     * point is inside that geofence or not. Capped at the distance that already earns the
+     * longest ping interval, so the search stays local.
+     */
+    public double distanceToNearestBoundaryMeters(double latitude, double longitude) {
+        double limit = pingMaxSeconds * pingAssumedSpeedMps;
+        if (isMongoLookup()) {
+            double best = limit;
+            for (CompiledGeofence compiled : candidatesNear(latitude, longitude, limit)) {
+                best = Math.min(best, Math.abs(compiled.signedDistanceMeters(latitude, longitude)));
             }
-            
-            // Ray casting algorithm implementation
-            int crossings = 0;
-            int n = coordinates.size();
-            
-            for (int i = 0; i < n; i++) {
-                Map<String, Double> p1 = coordinates.get(i);
-                Map<String, Double> p2 = coordinates.get((i + 1) % n);
-
-                Double lat1d = p1.get("lat");
-                Double lng1d = p1.get("lng");
-                Double lat2d = p2.get("lat");
-                Double lng2d = p2.get("lng");
-
-                if (lat1d == null || lng1d == null || lat2d == null || lng2d == null) {
-                    // skip malformed coordinate entries
-                    continue;
-                }
-
-                double lat1 = lat1d;
-                double lng1 = lng1d;
-                double lat2 = lat2d;
-                double lng2 = lng2d;
-
-                if (isRayCrossing(latitude, longitude, lat1, lng1, lat2, lng2)) {
-                    crossings++;
-                }
+            return best;
+        }
+        return activeSnapshot().index().minDistance(
+            bounds -> bounds.distanceLowerBoundMeters(latitude, longitude),
+            compiled -> Math.abs(compiled.signedDistanceMeters(latitude, longitude)),
+            limit);
+    }
+    
+    /**
+     * Suggested delay before the client's next location ping: roughly the time needed to
+     * reach the nearest boundary at the assumed speed, less the fix's uncertainty.
+     */
+    public int suggestNextPingSeconds(double distanceToBoundaryMeters, Float accuracy) {
+        double reach = Math.max(0, distanceToBoundaryMeters - (accuracy != null ? accuracy : 0));
+        long seconds = Math.round(reach / pingAssumedSpeedMps);
+        return (int) Math.max(pingMinSeconds, Math.min(pingMaxSeconds, seconds));
+    }
+    
+    /**
+     * First active geofence that contains the point at least {@code depthMeters} inside its
+     * boundary
+     */
+    public Geofence findGeofenceContainingPoint(double latitude, double longitude, double depthMeters) {
+        for (CompiledGeofence compiled : candidatesNear(latitude, longitude, 0)) {
+            if (compiled.signedDistanceMeters(latitude, longitude) <= -depthMeters) {
+                return compiled.getGeofence();
             }
-            
-            return crossings % 2 == 1;
-        } catch (Exception e) {
-            log.error("Error checking polygon geofence", e);
-            return false;
         }
+        return null;
     }
     
     /**
-     * Check if a user is inside any active geofence
+     * Whether any active geofence contains the point or has its boundary within {@code distanceMeters}
      */
-    public Geofence findGeofenceContainingPoint(Double latitude, Double longitude) {
-        List<Geofence> activeGeofences = geofenceRepository.findByIsActiveTrue();
+    public boolean isNearAnyGeofence(double latitude, double longitude, double distanceMeters) {
+        for (CompiledGeofence compiled : candidatesNear(latitude, longitude, distanceMeters)) {
+            if (compiled.signedDistanceMeters(latitude, longitude) <= distanceMeters) {
+                return true;
+            }
+        }
+        return false;
+    }
+    
+    /**
+     * Changes whenever the geofences this instance evaluates against may have changed. Under
+     * the mongo strategy, changes made on other instances do not move it.
+     */
+    public long getGeofenceVersion() {
+        return geofenceVersion.get();
+    }
+    
+    /**
+     * Compact catalog of a manager's active geofences for on-device evaluation
+     */
+    public GeofenceCatalog getCatalog(String managerId) {
+        GeofenceSnapshot current = activeSnapshot();
+        if (managerId == null) {
+            return GeofenceCatalog.encode(current.getVersion(), List.of());
+        }
+        GeofenceCatalog catalog = catalogs.get(managerId);
+        if (catalog == null || catalog.getSnapshotVersion() != current.getVersion()) {
+            StrTree<CompiledGeofence> index = current.index(managerId);
+            catalog = GeofenceCatalog.encode(current.getVersion(), index != null ? index.items() : List.of());
+            catalogs.put(managerId, catalog);
+        }
+        return catalog;
+    }
+    
+    /**
+     * Current geofence snapshot, built on first use
+     */
+    public GeofenceSnapshot getSnapshot() {
+        return activeSnapshot();
+    }
+    
+    private CompiledGeofence locate(GeofenceSnapshot current, String managerId, double lat, double lng) {
+        if (cellCacheEnabled) {
+            GeofenceCellCache.Cell cell = classifyCell(current, cellCache.cellOf(lat, lng));
+            if (cell.getKind() == GeofenceCellCache.Kind.OUTSIDE) {
+                return null;
+            }
+            // Every earlier geofence misses an INSIDE cell entirely, so the answer also holds for one manager's subset
+            if (cell.getKind() == GeofenceCellCache.Kind.INSIDE && ownedBy(cell.getGeofence(), managerId)) {
+                return cell.getGeofence();
+            }
+        }
         
-        for (Geofence geofence : activeGeofences) {
-            boolean isInside = geofence.getGeofenceType() == Geofence.GeofenceType.CIRCLE
-                ? isPointInCircleGeofence(latitude, longitude, geofence)
-                : isPointInPolygonGeofence(latitude, longitude, geofence);
-            
-            if (isInside) {
-                return geofence;
+        StrTree<CompiledGeofence> index = current.index(managerId);
+        if (index == null) {
+            return null;
+        }
+        for (CompiledGeofence compiled : index.query(lat, lng)) {
+            if (compiled.contains(lat, lng)) {
+                return compiled;
             }
         }
         
         return null;
     }
     
+    private boolean isMongoLookup() {
+        return LOOKUP_MONGO.equalsIgnoreCase(lookupStrategy);
+    }
+    
     /**
-     * Calculate distance between two points using Haversine formula (in meters)
+     * Repository-backed lookup: the 2dsphere indexes narrow circles down to those whose centre
+     * is within the largest active radius and polygons down to those whose GeoJSON boundary
+     * intersects the point. Each candidate is then confirmed with the planar test, and
+     * overlaps resolve by {@link CompiledGeofence#PRECEDENCE} as in the in-memory path.
+     * MongoDB treats polygon edges as geodesics, so the confirmation removes points the
+     * planar test rejects, but a point within the gap between a long geodesic edge and its
+     * planar counterpart can be missed here while the in-memory path finds it.
      */
-    public double calculateDistance(Double lat1, Double lng1, Double lat2, Double lng2) {
-        final int R = 6371000; // Earth's radius in meters
+    private Geofence locateInMongo(String managerId, double lat, double lng) {
+        try {
+            CompiledGeofence found = null;
+            double maxRadius = maxActiveRadiusMeters();
+            if (maxRadius > 0) {
+                for (Geofence candidate : geofenceRepository.findActiveCirclesNear(lat, lng, maxRadius, managerId)) {
+                    found = earlierContaining(found, CompiledGeofence.compile(candidate), lat, lng);
+                }
+            }
+            
+            for (Geofence polygon : geofenceRepository.findActivePolygonsIntersecting(lat, lng, managerId)) {
+                found = earlierContaining(found, CompiledGeofence.compile(polygon), lat, lng);
+            }
+            return found != null ? found.getGeofence() : null;
+        } catch (RuntimeException e) {
+            log.warn("Repository geofence lookup failed, falling back to in-process index: {}", e.getMessage());
+            CompiledGeofence found = locate(activeSnapshot(), managerId, lat, lng);
+            return found != null ? found.getGeofence() : null;
+        }
+    }
+    
+    /**
+     * Largest active circle radius. Changes made on this instance reset it at once; changes
+     * made on other instances are picked up within {@code max-radius-refresh-seconds}.
+     */
+    private double maxActiveRadiusMeters() {
+        MaxRadius current = maxActiveRadius;
+        if (current == null || current.isOlderThan(maxRadiusRefreshSeconds)) {
+            double radius = geofenceRepository
+                .findFirstByGeofenceTypeAndIsActiveTrueOrderByRadiusMetersDesc(Geofence.GeofenceType.CIRCLE)
+                .map(g -> g.getRadiusMeters() != null ? g.getRadiusMeters().doubleValue() : 0d)
+                .orElse(0d);
+            current = new MaxRadius(radius, System.nanoTime());
+            maxActiveRadius = current;
+        }
+        return current.meters;
+    }
+    
+    private static final class MaxRadius {
+        private final double meters;
+        private final long loadedAtNanos;
         
-        double dLat = Math.toRadians(lat2 - lat1);
-        double dLng = Math.toRadians(lng2 - lng1);
+        private MaxRadius(double meters, long loadedAtNanos) {
+            this.meters = meters;
+            this.loadedAtNanos = loadedAtNanos;
+        }
+        
+        private boolean isOlderThan(long seconds) {
+            return System.nanoTime() - loadedAtNanos > seconds * 1_000_000_000L;
+        }
+    }
+    
+    /**
+     * Active geofences that may contain the point or have their boundary within
+     * {@code reachMeters} of it, in {@link CompiledGeofence#PRECEDENCE} order, from the
+     * configured lookup strategy. Callers run the exact test on each.
+     */
+    private List<CompiledGeofence> candidatesNear(double lat, double lng, double reachMeters) {
+        if (isMongoLookup()) {
+            try {
+                List<CompiledGeofence> candidates = new ArrayList<>();
+                double maxRadius = maxActiveRadiusMeters();
+                if (maxRadius > 0) {
+                    for (Geofence circle : geofenceRepository.findActiveCirclesNear(lat, lng, maxRadius + reachMeters, null)) {
+                        candidates.add(CompiledGeofence.compile(circle));
+                    }
+                }
+                List<Geofence> polygons = reachMeters > 0
+                    ? geofenceRepository.findActivePolygonsNear(lat, lng, reachMeters, null)
+                    : geofenceRepository.findActivePolygonsIntersecting(lat, lng, null);
+                for (Geofence polygon : polygons) {
+                    candidates.add(CompiledGeofence.compile(polygon));
+                }
+                candidates.sort(CompiledGeofence.PRECEDENCE);
+                return candidates;
+            } catch (RuntimeException e) {
+                log.warn("Repository geofence lookup failed, falling back to in-process index: {}", e.getMessage());
+            }
+        }
+        StrTree<CompiledGeofence> index = activeSnapshot().index();
+        return reachMeters > 0
+            ? index.query(GeoBounds.aroundPoint(lat, lng, reachMeters))
+            : index.query(lat, lng);
+    }
+    
+    private static CompiledGeofence earlierContaining(CompiledGeofence best, CompiledGeofence candidate,
+                                                      double lat, double lng) {
+        if (!candidate.contains(lat, lng)) {
+            return best;
+        }
+        return best == null || CompiledGeofence.PRECEDENCE.compare(candidate, best) < 0 ? candidate : best;
+    }
+    
+    private static boolean ownedBy(CompiledGeofence compiled, String managerId) {
+        return managerId == null || managerId.equals(compiled.getGeofence().getCreatedById());
+    }
+    
+    private GeofenceCellCache.Cell classifyCell(GeofenceSnapshot current, String cellHash) {
+        GeofenceCellCache.Cell cell = cellCache.get(cellHash);
+        if (cell == null) {
+            GeoBounds cellBounds = Geohash.bounds(cellHash);
+            cell = GeofenceCellCache.classify(cellBounds, current.index().query(cellBounds));
+            cellCache.put(cellHash, cell);
+            if (snapshot.get() != current) {
+                // A geofence changed while we were classifying; don't leave a stale cell behind
+                cellCache.remove(cellHash, cell);
+            }
+        }
+        return cell;
+    }
+    
+    private GeofenceSnapshot activeSnapshot() {
+        GeofenceSnapshot current = snapshot.get();
+        if (current == null) {
+            synchronized (this) {
+                current = snapshot.get();
+                if (current == null) {
+                    current = rebuildSnapshot();
+                }
+            }
+        }
+        return current;
+    }
+    
+    private synchronized GeofenceSnapshot rebuildSnapshot() {
+        List<CompiledGeofence> compiled = geofenceRepository.findByIsActiveTrue().stream()
+            .map(CompiledGeofence::compile)
+            .toList();
+        GeofenceSnapshot previous = snapshot.get();
+        long version = previous != null ? previous.getVersion() + 1 : 1;
+        GeofenceSnapshot current = new GeofenceSnapshot(version, compiled);
+        snapshot.set(current);
+        if (previous != null) {
+            invalidateChangedCells(previous.index(), current.index());
+        }
+        log.debug("Published geofence snapshot v{} with {} geofences", version, current.size());
+        return current;
+    }
+    
+    /**
+     * Keep lookup state current after a geofence was saved or deleted. The snapshot is only
+     * rebuilt once something has used it; the mongo strategy may never need it.
+     */
+    private synchronized void onGeofencesChanged() {
+        maxActiveRadius = null;
+        geofenceVersion.incrementAndGet();
+        if (snapshot.get() != null) {
+            rebuildSnapshot();
+        }
+    }
+    
+    /**
+     * Picks up geofence changes written by other instances: every
+     * {@code geofencing.snapshot.check-interval-ms}, compare the geofence count and newest
+     * {@code updatedAt} with the last check and refresh when either moved. Saves and deletes
+     * through any instance move one of them, so the snapshot is at most one interval stale.
+     */
+    @Scheduled(fixedDelayString = "${geofencing.snapshot.check-interval-ms:30000}")
+    public void checkForChanges() {
+        ChangeMarker current;
+        try {
+            current = new ChangeMarker(geofenceRepository.count(),
+                geofenceRepository.findFirstByOrderByUpdatedAtDesc()
+                    .map(Geofence::getUpdatedAt)
+                    .orElse(null));
+        } catch (RuntimeException e) {
+            log.warn("Could not check geofences for changes: {}", e.getMessage());
+            return;
+        }
+        ChangeMarker previous = changeMarker;
+        changeMarker = current;
+        if (!current.equals(previous)) {
+            log.debug("Geofences changed ({} geofences, last update {}), refreshing", current.count,
+                current.lastUpdatedAt);
+            onGeofencesChanged();
+        }
+    }
+    
+    private static final class ChangeMarker {
+        private final long count;
+        private final LocalDateTime lastUpdatedAt;
         
-        double a = Math.sin(dLat / 2) * Math.sin(dLat / 2) +
-                   Math.cos(Math.toRadians(lat1)) * Math.cos(Math.toRadians(lat2)) *
-                   Math.sin(dLng / 2) * Math.sin(dLng / 2);
+        private ChangeMarker(long count, LocalDateTime lastUpdatedAt) {
+            this.count = count;
+            this.lastUpdatedAt = lastUpdatedAt;
+        }
         
-        double c = 2 * Math.atan2(Math.sqrt(a), Math.sqrt(1 - a));
+        @Override
+        public boolean equals(Object other) {
+            return other instanceof ChangeMarker marker && count == marker.count
+                && Objects.equals(lastUpdatedAt, marker.lastUpdatedAt);
+        }
         
-        return R * c;
+        @Override
+        public int hashCode() {
+            return Objects.hash(count, lastUpdatedAt);
+        }
     }
     
     /**
-     * Check if ray from point crosses a line segment
+     * Full periodic rebuild, for changes written directly to the database without
+     * {@code updatedAt}. Disabled unless {@code geofencing.snapshot.refresh-cron} is set.
      */
-    private boolean isRayCrossing(Double pointLat, Double pointLng, 
-                                  Double lat1, Double lng1, Double lat2, Double lng2) {
-        if ((lng1 <= pointLng && pointLng < lng2) || (lng2 <= pointLng && pointLng < lng1)) {
-            double slope = (lat2 - lat1) / (lng2 - lng1);
-            double latAtLng = lat1 + slope * (pointLng - lng1);
-            return pointLat < latAtLng;
+    @Scheduled(cron = "${geofencing.snapshot.refresh-cron:-}")
+    public void refreshSnapshot() {
+        maxActiveRadius = null;
+        geofenceVersion.incrementAndGet();
+        if (snapshot.get() != null) {
+            rebuildSnapshot();
         }
-        return false;
+    }
+    
+    /**
+     * Drop cached cells around every geofence that was added, removed or reshaped
+     */
+    private void invalidateChangedCells(StrTree<CompiledGeofence> previous, StrTree<CompiledGeofence> current) {
+        Map<String, CompiledGeofence> removed = new HashMap<>();
+        for (CompiledGeofence old : previous.items()) {
+            removed.put(old.getId(), old);
+        }
+        int dropped = 0;
+        for (CompiledGeofence now : current.items()) {
+            CompiledGeofence old = removed.remove(now.getId());
+            if (old != null && old.sameShape(now)) {
+                continue;
+            }
+            dropped += invalidateCells(old);
+            dropped += invalidateCells(now);
+        }
+        for (CompiledGeofence old : removed.values()) {
+            dropped += invalidateCells(old);
+        }
+        if (dropped > 0) {
+            log.debug("Invalidated {} cached geofence cells", dropped);
+        }
+    }
+    
+    private int invalidateCells(CompiledGeofence geofence) {
+        if (geofence == null || geofence.getBounds() == null) {
+            return 0;
+        }
+        return cellCache.invalidate(geofence.getBounds());
+    }
+    
+    /**
+     * Calculate distance between two points using Haversine formula (in meters)
+     */
+    public double calculateDistance(Double lat1, Double lng1, Double lat2, Double lng2) {
+        return calculateDistance(lat1.doubleValue(), lng1.doubleValue(), lat2.doubleValue(), lng2.doubleValue());
+    }
+    
+    /**
+     * Primitive overload of {@link #calculateDistance(Double, Double, Double, Double)} for hot paths
+     */
+    public double calculateDistance(double lat1, double lng1, double lat2, double lng2) {
+        return GeoMath.haversineMeters(lat1, lng1, lat2, lng2);
     }
     
     @Cacheable(value = "geofences", key = "'manager:' + #userId")
@@ -147,15 +578,18 @@ public class GeofencingService {
         return geofenceRepository.findByCreatedById(userId);
     }
 
-    @Cacheable(value = "geofences", key = "'active:manager:' + #userId")
+    /**
+     * A manager's active geofences, served from the current snapshot
+     */
     public List<Geofence> getActiveGeofencesByManager(String userId) {
-        return geofenceRepository.findByCreatedByIdAndIsActiveTrue(userId);
+        return activeSnapshot().activeGeofences(userId);
     }
     
     @Transactional
     @CacheEvict(value = "geofences", allEntries = true)
     public Geofence createGeofence(Geofence geofence) {
         log.info("Creating geofence: {}", geofence.getName());
+        CompiledGeofence.validate(geofence);
         
         // Create GeoJsonPoint from latitude and longitude if not already set
         if (geofence.getLocation() == null && geofence.getLatitude() != null && geofence.getLongitude() != null) {
@@ -164,8 +598,13 @@ public class GeofencingService {
                 geofence.getLatitude()
             ));
         }
+        geofence.setBoundary(geofence.getGeofenceType() == Geofence.GeofenceType.POLYGON
+            ? CompiledGeofence.toGeoJsonPolygon(geofence.getPolygonCoordinates())
+            : null);
         
-        return geofenceRepository.save(geofence);
+        Geofence saved = geofenceRepository.save(geofence);
+        onGeofencesChanged();
+        return saved;
     }
     
     /**
@@ -186,6 +625,7 @@ public class GeofencingService {
         geofence.setPolygonCoordinates(geofenceUpdate.getPolygonCoordinates());
         geofence.setGeofenceType(geofenceUpdate.getGeofenceType());
         geofence.setIsActive(geofenceUpdate.getIsActive());
+        CompiledGeofence.validate(geofence);
         
         // Update GeoJsonPoint from latitude and longitude
         if (geofenceUpdate.getLatitude() != null && geofenceUpdate.getLongitude() != null) {
@@ -194,9 +634,14 @@ public class GeofencingService {
                 geofenceUpdate.getLatitude()
             ));
         }
+        geofence.setBoundary(geofence.getGeofenceType() == Geofence.GeofenceType.POLYGON
+            ? CompiledGeofence.toGeoJsonPolygon(geofence.getPolygonCoordinates())
+            : null);
         
         log.info("Updated geofence: {} - Active: {}", id, geofenceUpdate.getIsActive());
-        return geofenceRepository.save(geofence);
+        Geofence saved = geofenceRepository.save(geofence);
+        onGeofencesChanged();
+        return saved;
     }
     
     /**
@@ -206,6 +651,7 @@ public class GeofencingService {
     @CacheEvict(value = "geofences", allEntries = true)
     public void deleteGeofence(String id) {
         geofenceRepository.deleteById(id);
+        onGeofencesChanged();
         log.info("Deleted geofence: {}", id);
     }
     
@@ -214,21 +660,7 @@ public class GeofencingService {
      */
     @Transactional
     public void handleGeofenceEvent(User user, Double latitude, Double longitude, Float accuracy) {
-        String managerId = user.getManagerId();
-        Geofence currentGeofence = null;
-        
-        if (managerId != null) {
-            List<Geofence> managerGeofences = geofenceRepository.findByCreatedByIdAndIsActiveTrue(managerId);
-            for (Geofence g : managerGeofences) {
-                boolean inside = g.getGeofenceType() == Geofence.GeofenceType.CIRCLE
-                    ? isPointInCircleGeofence(latitude, longitude, g)
-                    : isPointInPolygonGeofence(latitude, longitude, g);
-                if (inside) {
-                    currentGeofence = g;
-                    break;
-                }
-            }
-        }
+        Geofence currentGeofence = findGeofenceContainingPoint(user.getManagerId(), latitude, longitude);
         
         // Get the latest attendance record for the user today
 
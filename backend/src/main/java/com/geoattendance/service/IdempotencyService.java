@@ -0,0 +1,133 @@
+package com.geoattendance.service;
+
+import com.geoattendance.entity.AttendanceRecord;
+import com.geoattendance.entity.IdempotencyKey;
+import com.geoattendance.repository.AttendanceRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.function.Supplier;
+
+/**
+ * Makes check-in and check-out safe to retry. The first request with a given key claims it
+ * by inserting its document; repeats get the recorded outcome instead of running again: the
+ * attendance record it produced, or the same error. A repeat that arrives while the first
+ * request is still running is refused with {@link IllegalStateException}. The first request
+ * only holds the key for {@code attendance.idempotency.lease-seconds}: if it crashed or could
+ * not record its outcome, a later repeat takes the key over and runs the action again, which
+ * the conditional attendance transitions make safe.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class IdempotencyService {
+
+    private static final int MAX_KEY_LENGTH = 128;
+
+    private final MongoTemplate mongoTemplate;
+    private final AttendanceRepository attendanceRepository;
+
+    @Value("${attendance.idempotency.lease-seconds:30}")
+    private long leaseSeconds;
+
+    /**
+     * Run {@code action} once per user and key; without a key it simply runs
+     */
+    public AttendanceRecord execute(String userId, String key, String operation, Supplier<AttendanceRecord> action) {
+        if (key == null || key.isBlank()) {
+            return action.get();
+        }
+        if (key.length() > MAX_KEY_LENGTH) {
+            throw new IllegalArgumentException("Idempotency key must be at most " + MAX_KEY_LENGTH + " characters");
+        }
+
+        String id = userId + ":" + key;
+        LocalDateTime now = LocalDateTime.now();
+        try {
+            mongoTemplate.insert(IdempotencyKey.builder()
+                .id(id)
+                .userId(userId)
+                .operation(operation)
+                .createdAt(now)
+                .inProgressUntil(now.plusSeconds(leaseSeconds))
+                .build());
+        } catch (DuplicateKeyException e) {
+            IdempotencyKey existing = mongoTemplate.findById(id, IdempotencyKey.class);
+            if (!takeOver(existing, operation)) {
+                return replay(existing, operation);
+            }
+            log.info("Taking over idempotency key {} whose request did not finish", id);
+        }
+
+        AttendanceRecord record;
+        try {
+            record = action.get();
+        } catch (DataAccessException e) {
+            // Nothing was decided; let the retry run it again
+            mongoTemplate.remove(new Query(Criteria.where("_id").is(id)), IdempotencyKey.class);
+            throw e;
+        } catch (RuntimeException e) {
+            complete(id, new Update().set("error", e.getMessage()));
+            throw e;
+        }
+        complete(id, new Update().set("recordId", record.getId()));
+        return record;
+    }
+
+    /**
+     * Claim a key whose request is still marked in progress but whose lease has run out.
+     * Only one of several concurrent retries wins.
+     */
+    private boolean takeOver(IdempotencyKey existing, String operation) {
+        if (existing == null || existing.isCompleted() || !operation.equals(existing.getOperation())) {
+            return false;
+        }
+        LocalDateTime now = LocalDateTime.now();
+        // Keys written before leases existed count from their creation
+        LocalDateTime leaseEnd = existing.getInProgressUntil() != null
+            ? existing.getInProgressUntil() : existing.getCreatedAt().plusSeconds(leaseSeconds);
+        if (leaseEnd.isAfter(now)) {
+            return false;
+        }
+        IdempotencyKey taken = mongoTemplate.findAndModify(
+            new Query(Criteria.where("_id").is(existing.getId())
+                .and("completed").is(false)
+                .and("inProgressUntil").is(existing.getInProgressUntil())),
+            new Update().set("inProgressUntil", now.plusSeconds(leaseSeconds)),
+            FindAndModifyOptions.options().returnNew(true), IdempotencyKey.class);
+        return taken != null;
+    }
+
+    private AttendanceRecord replay(IdempotencyKey existing, String operation) {
+        if (existing == null) {
+            throw new IllegalStateException("Idempotency key expired while in use, please retry");
+        }
+        if (!operation.equals(existing.getOperation())) {
+            throw new IllegalArgumentException("Idempotency key was already used for a different request");
+        }
+        if (!existing.isCompleted()) {
+            throw new IllegalStateException("A request with this idempotency key is still in progress");
+        }
+        log.debug("Replaying {} for idempotency key {}", operation, existing.getId());
+        if (existing.getError() != null) {
+            throw new RuntimeException(existing.getError());
+        }
+        return attendanceRepository.findById(existing.getRecordId())
+            .orElseThrow(() -> new RuntimeException("Attendance record no longer exists"));
+    }
+
+    private void complete(String id, Update update) {
+        mongoTemplate.updateFirst(new Query(Criteria.where("_id").is(id)), update.set("completed", true),
+            IdempotencyKey.class);
+    }
+}
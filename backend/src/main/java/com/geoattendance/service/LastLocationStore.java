@@ -0,0 +1,144 @@
+package com.geoattendance.service;
+
+import com.geoattendance.entity.LastLocation;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import com.mongodb.bulk.BulkWriteError;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.BulkOperationException;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Write-behind store for each user's last known position. Location updates only replace
+ * the user's entry in memory (last write wins); a scheduled flush writes whatever changed
+ * to {@code last_locations} as one unordered bulk of upserts, each of which only replaces
+ * a stored position observed earlier, so a late older fix never overwrites a newer one
+ * in the collection either. The buffer is bounded:
+ * while it is full, positions of users not already buffered are dropped until the next
+ * flush, since the following ping will carry a fresher one anyway.
+ */
+@Service
+@Slf4j
+public class LastLocationStore {
+
+    private final MongoTemplate mongoTemplate;
+    private final Map<String, LastLocation> buffer = new ConcurrentHashMap<>();
+
+    private final Timer flushTimer;
+    private final Counter writtenCounter;
+    private final Counter droppedCounter;
+
+    @Value("${attendance.last-location.max-buffered:50000}")
+    private int maxBuffered;
+
+    public LastLocationStore(MongoTemplate mongoTemplate, MeterRegistry meterRegistry) {
+        this.mongoTemplate = mongoTemplate;
+        this.flushTimer = Timer.builder("attendance.last_location.flush")
+                .description("Time to write buffered last-known locations to MongoDB")
+                .publishPercentiles(0.5, 0.99)
+                .register(meterRegistry);
+        this.writtenCounter = Counter.builder("attendance.last_location.written")
+                .description("Last-known locations upserted")
+                .register(meterRegistry);
+        this.droppedCounter = Counter.builder("attendance.last_location.dropped")
+                .description("Positions dropped because the write-behind buffer was full")
+                .register(meterRegistry);
+        Gauge.builder("attendance.last_location.buffered", buffer, Map::size)
+                .description("Last-known locations waiting to be flushed")
+                .register(meterRegistry);
+    }
+
+    public void record(String userId, double latitude, double longitude, Float accuracy, Instant observedAt) {
+        LastLocation location = LastLocation.builder()
+                .userId(userId)
+                .latitude(latitude)
+                .longitude(longitude)
+                .accuracyMeters(accuracy)
+                .observedAt(LocalDateTime.ofInstant(observedAt, ZoneId.systemDefault()))
+                .build();
+        if (buffer.size() >= maxBuffered && !buffer.containsKey(userId)) {
+            droppedCounter.increment();
+            return;
+        }
+        // A late-arriving older fix must not replace a newer buffered one
+        buffer.merge(userId, location, (buffered, fresh) ->
+                fresh.getObservedAt().isBefore(buffered.getObservedAt()) ? buffered : fresh);
+    }
+
+    @Scheduled(fixedDelayString = "${attendance.last-location.flush-interval-ms:5000}")
+    public void flush() {
+        if (buffer.isEmpty()) {
+            return;
+        }
+        List<LastLocation> batch = new ArrayList<>(buffer.size());
+        for (String userId : buffer.keySet()) {
+            LastLocation location = buffer.remove(userId);
+            if (location != null) {
+                batch.add(location);
+            }
+        }
+        if (batch.isEmpty()) {
+            return;
+        }
+
+        Timer.Sample sample = Timer.start();
+        try {
+            BulkOperations ops = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, LastLocation.class);
+            for (LastLocation location : batch) {
+                // A stored newer fix makes the filter miss and the upsert collide on _id
+                ops.upsert(new Query(Criteria.where("_id").is(location.getUserId()).orOperator(
+                        Criteria.where("observedAt").lt(location.getObservedAt()),
+                        Criteria.where("observedAt").exists(false))), new Update()
+                        .set("latitude", location.getLatitude())
+                        .set("longitude", location.getLongitude())
+                        .set("accuracyMeters", location.getAccuracyMeters())
+                        .set("observedAt", location.getObservedAt()));
+            }
+            int superseded = 0;
+            try {
+                ops.execute();
+            } catch (BulkOperationException e) {
+                for (BulkWriteError error : e.getErrors()) {
+                    // 11000: the stored position is newer, nothing to write
+                    if (error.getCode() != 11000) {
+                        throw e;
+                    }
+                }
+                superseded = e.getErrors().size();
+            }
+            writtenCounter.increment(batch.size() - superseded);
+            log.debug("Flushed {} last-known locations, {} already superseded", batch.size() - superseded, superseded);
+        } catch (RuntimeException e) {
+            // Put back what has not been superseded by a newer position in the meantime
+            for (LastLocation location : batch) {
+                buffer.putIfAbsent(location.getUserId(), location);
+            }
+            log.warn("Could not flush {} last-known locations, will retry: {}", batch.size(), e.getMessage());
+        } finally {
+            sample.stop(flushTimer);
+        }
+    }
+
+    @PreDestroy
+    public void flushOnShutdown() {
+        flush();
+    }
+}
@@ -7,6 +7,7 @@ import com.geoattendance.repository.TeamRepository;
 import com.geoattendance.repository.UserRepository;
 import com.geoattendance.repository.GeofenceRepository;
 import lombok.RequiredArgsConstructor;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.cache.annotation.Cacheable;
@@ -21,6 +22,7 @@ public class TeamService {
     private final TeamRepository teamRepository;
     private final UserRepository userRepository;
     private final GeofenceRepository geofenceRepository;
+    private final ApplicationEventPublisher eventPublisher;
 
     @Cacheable(value = "teams", key = "'manager:' + #managerId")
     public List<Team> getTeamsByManager(String managerId) {
@@ -127,11 +129,14 @@ public class TeamService {
             team.setCheckOutBufferMinutes(checkOutBufferMinutes);
         }
         
-        return teamRepository.save(team);
+        Team saved = teamRepository.save(team);
+        eventPublisher.publishEvent(new TeamWorkHoursChangedEvent(teamId));
+        return saved;
     }
     @Transactional
     @CacheEvict(value = "teams", allEntries = true)
     public void deleteTeam(String teamId) {
         teamRepository.deleteById(teamId);
+        eventPublisher.publishEvent(new TeamWorkHoursChangedEvent(teamId));
     }
 }
@@ -0,0 +1,18 @@
+package com.geoattendance.service;
+
+/**
+ * Published by {@link TeamService} when a team's work hours change or the team is deleted,
+ * so anything planned around its deadlines can re-plan that one team.
+ */
+public class TeamWorkHoursChangedEvent {
+
+    private final String teamId;
+
+    public TeamWorkHoursChangedEvent(String teamId) {
+        this.teamId = teamId;
+    }
+
+    public String getTeamId() {
+        return teamId;
+    }
+}
@@ -0,0 +1,83 @@
+package com.geoattendance.service;
+
+import com.geoattendance.entity.User;
+import com.geoattendance.repository.UserRepository;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.core.mapping.event.AbstractMongoEventListener;
+import org.springframework.data.mongodb.core.mapping.event.AfterDeleteEvent;
+import org.springframework.data.mongodb.core.mapping.event.AfterSaveEvent;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Short-lived cache of users by email. The JWT filter and {@link AuthenticationService}
+ * both look the caller up on every request, and each lookup also resolves the manager
+ * reference. Saves and deletes made through this instance evict immediately; changes made
+ * elsewhere are picked up within the TTL. Callers get their own copy of the user.
+ */
+@Component
+@RequiredArgsConstructor
+public class UserCache extends AbstractMongoEventListener<User> {
+
+    private static final class Entry {
+        private final User user;
+        private final long loadedAtNanos;
+
+        private Entry(User user, long loadedAtNanos) {
+            this.user = user;
+            this.loadedAtNanos = loadedAtNanos;
+        }
+    }
+
+    private final UserRepository userRepository;
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+
+    // 0 disables the cache
+    @Value("${app.user-cache.ttl-seconds:30}")
+    private long ttlSeconds;
+
+    @Value("${app.user-cache.max-entries:10000}")
+    private int maxEntries;
+
+    public Optional<User> findByEmail(String email) {
+        if (ttlSeconds <= 0) {
+            return userRepository.findByEmail(email);
+        }
+        long now = System.nanoTime();
+        Entry entry = entries.get(email);
+        if (entry == null || now - entry.loadedAtNanos > ttlSeconds * 1_000_000_000L) {
+            Optional<User> loaded = userRepository.findByEmail(email);
+            if (loaded.isEmpty()) {
+                entries.remove(email);
+                return loaded;
+            }
+            if (entries.size() >= maxEntries) {
+                entries.clear();
+            }
+            entry = new Entry(loaded.get(), now);
+            entries.put(email, entry);
+        }
+        return Optional.of(entry.user.toBuilder().build());
+    }
+
+    public void evictAll() {
+        entries.clear();
+    }
+
+    @Override
+    public void onAfterSave(AfterSaveEvent<User> event) {
+        User saved = event.getSource();
+        // The email itself may have changed, so match on id as well
+        entries.entrySet().removeIf(e -> e.getKey().equals(saved.getEmail())
+            || (saved.getId() != null && saved.getId().equals(e.getValue().user.getId())));
+    }
+
+    @Override
+    public void onAfterDelete(AfterDeleteEvent<User> event) {
+        entries.clear();
+    }
+}